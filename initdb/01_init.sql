@@ -48,7 +48,7 @@ CREATE TABLE IF NOT EXISTS rag.task_examples (
 CREATE INDEX IF NOT EXISTS idx_doc_chunks_task_section ON rag.doc_chunks (task_name, section_type);
 CREATE INDEX IF NOT EXISTS idx_task_props ON rag.task_properties (task_name, property_name);
 
--- Vector indexes (create after data is loaded; lists depends on dataset size)
+-- Vector and full text indexes for 3072 dimensions are created by the app's Flyway migrations (src/main/resources/db/migration)
 --CREATE INDEX idx_doc_chunks_embed ON rag.doc_chunks USING ivfflat (embedding vector_cosine_ops) WITH (lists = 100);
 --CREATE INDEX idx_task_examples_embed ON rag.task_examples USING ivfflat (embedding vector_cosine_ops) WITH (lists = 100);
 
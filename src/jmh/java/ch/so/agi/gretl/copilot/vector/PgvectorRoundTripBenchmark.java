@@ -0,0 +1,104 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pgvector.PGvector;
+
+/**
+ * The {@code vec} stage of the hybrid query as a pgvector round trip against the database of
+ * {@code docker-compose.yml}. Needs an ingested corpus; fails in setup if the database is not reachable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PgvectorRoundTripBenchmark {
+
+    private static final String QUERY = """
+            SELECT id, 1.0 - (embedding <=> ?) AS v_score
+            FROM rag.doc_chunks
+            ORDER BY embedding <=> ?
+            LIMIT ?
+            """;
+
+    @Param({ "jdbc:postgresql://localhost:54323/gretl_rag" })
+    String jdbcUrl;
+
+    @Param({ "gretl" })
+    String user;
+
+    @Param({ "gretl" })
+    String password;
+
+    @Param({ "50" })
+    int k;
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        int dimensions;
+        try (PreparedStatement probe = connection
+                .prepareStatement("SELECT vector_dims(embedding) FROM rag.doc_chunks WHERE embedding IS NOT NULL LIMIT 1");
+                ResultSet rs = probe.executeQuery()) {
+            if (!rs.next()) {
+                throw new IllegalStateException("rag.doc_chunks has no embeddings");
+            }
+            dimensions = rs.getInt(1);
+        }
+        Random random = new Random(42);
+        float[] query = new float[dimensions];
+        for (int index = 0; index < dimensions; index++) {
+            query[index] = (float) random.nextGaussian();
+        }
+        PGvector vector = new PGvector(VectorMath.normalize(query));
+        statement = connection.prepareStatement(QUERY);
+        statement.setObject(1, vector);
+        statement.setObject(2, vector);
+        statement.setInt(3, k);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public List<VectorHit> pgvectorSearch() throws SQLException {
+        List<VectorHit> hits = new ArrayList<>(k);
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                hits.add(new VectorHit(rs.getLong(1), rs.getFloat(2)));
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,117 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * In-process vector search over random unit vectors of the production embedding size. Compare with
+ * {@link PgvectorRoundTripBenchmark}, which measures the same top-k query as a pgvector round trip.
+ *
+ * <pre>
+ * ./gradlew jmh
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    @Param({ "3072" })
+    int dimensions;
+
+    @Param({ "2000", "20000" })
+    int rows;
+
+    @Param({ "50" })
+    int k;
+
+    private HeapEmbeddingMatrix matrix;
+    private ExactIndex exact;
+    private HnswIndex hnsw;
+    private QuantizedIndex int8;
+    private QuantizedIndex binary;
+    private PrefixIndex prefix;
+    private float[] query;
+    private float[] row;
+    private final SimdKernel simd = new SimdKernel();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long[] ids = new long[rows];
+        List<float[]> vectors = new ArrayList<>(rows);
+        for (int ordinal = 0; ordinal < rows; ordinal++) {
+            ids[ordinal] = ordinal;
+            vectors.add(randomVector(random));
+        }
+        matrix = HeapEmbeddingMatrix.normalized(ids, vectors, dimensions);
+        exact = new ExactIndex(matrix);
+        hnsw = HnswIndex.build(matrix, 16, 200, 100, 42);
+        int8 = QuantizedIndex.build(matrix, Quantization.INT8, 8);
+        binary = QuantizedIndex.build(matrix, Quantization.BINARY, 8);
+        prefix = PrefixIndex.build(matrix, 256, 4, ExactIndex::new);
+        query = VectorMath.normalize(randomVector(random));
+        row = matrix.vector(0);
+    }
+
+    @Benchmark
+    public float dotScalar() {
+        return VectorMath.scalarDot(query, 0, row, 0, dimensions);
+    }
+
+    @Benchmark
+    public float dotSimd() {
+        return simd.dot(query, 0, row, 0, dimensions);
+    }
+
+    @Benchmark
+    public List<VectorHit> exactSearch() {
+        return exact.search(query, k);
+    }
+
+    @Benchmark
+    public List<VectorHit> hnswSearch() {
+        return hnsw.search(query, k);
+    }
+
+    @Benchmark
+    public List<VectorHit> int8Search() {
+        return int8.search(query, k);
+    }
+
+    @Benchmark
+    public List<VectorHit> binarySearch() {
+        return binary.search(query, k);
+    }
+
+    @Benchmark
+    public List<VectorHit> prefixSearch() {
+        return prefix.search(query, k);
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimensions];
+        for (int index = 0; index < dimensions; index++) {
+            vector[index] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -5,11 +5,18 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.ComponentScan;
 
+import ch.so.agi.gretl.copilot.chat.ChatPipelineProperties;
+import ch.so.agi.gretl.copilot.corpus.CorpusProperties;
 import ch.so.agi.gretl.copilot.intent.IntentClassifierProperties;
+import ch.so.agi.gretl.copilot.model.SemanticCacheProperties;
+import ch.so.agi.gretl.copilot.retrieval.RerankCacheProperties;
 import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties;
+import ch.so.agi.gretl.copilot.vector.VectorIndexProperties;
 
 @SpringBootApplication(scanBasePackages = "ch.so.agi.gretl.copilot")
-@EnableConfigurationProperties({ RetrievalProperties.class, IntentClassifierProperties.class })
+@EnableConfigurationProperties({ RetrievalProperties.class, IntentClassifierProperties.class,
+        ChatPipelineProperties.class, SemanticCacheProperties.class, RerankCacheProperties.class,
+        CorpusProperties.class, VectorIndexProperties.class })
 @ComponentScan("ch.so.agi.gretl.copilot")
 public class GretlCopilotApplication {
     public static void main(String[] args) {
@@ -0,0 +1,36 @@
+package ch.so.agi.gretl.copilot.app;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ch.so.agi.gretl.copilot.chat.ChatPipelineProperties;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class SchedulerConfiguration {
+
+    public static final String BLOCKING_SCHEDULER = "copilotBlockingScheduler";
+
+    public static final String RETRIEVAL_BRANCH_SCHEDULER = "copilotRetrievalBranchScheduler";
+
+    /**
+     * Scheduler for the blocking stages of the assistant pipeline (JDBC, embedding and reranker calls). Keeps them
+     * off the request threads handed out by the web container.
+     */
+    @Bean(name = BLOCKING_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler copilotBlockingScheduler(ChatPipelineProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getBlockingThreadCap(), properties.getBlockingQueueCap(),
+                "copilot-blocking");
+    }
+
+    /**
+     * Scheduler for the vector and lexical branch queries that one retrieval stage runs concurrently. Separate from
+     * the blocking scheduler because the stage waiting for them already holds one of its threads.
+     */
+    @Bean(name = RETRIEVAL_BRANCH_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler copilotRetrievalBranchScheduler(ChatPipelineProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getBlockingThreadCap(), properties.getBlockingQueueCap(),
+                "copilot-retrieval-branch");
+    }
+}
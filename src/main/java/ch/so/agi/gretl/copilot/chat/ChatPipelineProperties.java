@@ -0,0 +1,82 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gretl.copilot.pipeline")
+public class ChatPipelineProperties {
+    private Mode mode = Mode.PARALLEL;
+    private boolean speculative = true;
+    private boolean coalesce = true;
+    private Duration frameWindow = Duration.ofMillis(40);
+    private int frameMaxBytes = 4096;
+    private int blockingThreadCap = 32;
+    private int blockingQueueCap = 1000;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    public void setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public Duration getFrameWindow() {
+        return frameWindow;
+    }
+
+    public void setFrameWindow(Duration frameWindow) {
+        this.frameWindow = frameWindow;
+    }
+
+    public int getFrameMaxBytes() {
+        return frameMaxBytes;
+    }
+
+    public void setFrameMaxBytes(int frameMaxBytes) {
+        this.frameMaxBytes = frameMaxBytes;
+    }
+
+    public int getBlockingThreadCap() {
+        return blockingThreadCap;
+    }
+
+    public void setBlockingThreadCap(int blockingThreadCap) {
+        this.blockingThreadCap = blockingThreadCap;
+    }
+
+    public int getBlockingQueueCap() {
+        return blockingQueueCap;
+    }
+
+    public void setBlockingQueueCap(int blockingQueueCap) {
+        this.blockingQueueCap = blockingQueueCap;
+    }
+
+    /**
+     * How intent classification and retrieval are scheduled relative to each other.
+     */
+    public enum Mode {
+        /** Classify first and hand the classification to the retrieval service. */
+        SEQUENTIAL,
+        /** Classify and retrieve concurrently; the retrieval service receives no classification. */
+        PARALLEL
+    }
+}
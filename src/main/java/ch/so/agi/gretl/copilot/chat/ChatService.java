@@ -4,15 +4,24 @@ import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.concurrent.CancellationScope;
+import ch.so.agi.gretl.copilot.embedding.QueryEmbeddingService;
 import ch.so.agi.gretl.copilot.intent.IntentClassification;
 import ch.so.agi.gretl.copilot.intent.IntentClassifier;
 import ch.so.agi.gretl.copilot.model.CopilotModelClient;
 import ch.so.agi.gretl.copilot.model.CopilotPrompt;
 import ch.so.agi.gretl.copilot.model.CopilotStreamSegment;
+import ch.so.agi.gretl.copilot.model.SemanticResponseCache;
+import ch.so.agi.gretl.copilot.retrieval.QueryNormalizer;
 import ch.so.agi.gretl.copilot.retrieval.RetrievalResult;
 import ch.so.agi.gretl.copilot.retrieval.RetrievedDocument;
 import ch.so.agi.gretl.copilot.retrieval.RetrievalService;
@@ -20,24 +29,48 @@ import ch.so.agi.gretl.copilot.session.ChatMessage;
 import ch.so.agi.gretl.copilot.session.ChatRole;
 import ch.so.agi.gretl.copilot.session.ChatSession;
 import ch.so.agi.gretl.copilot.session.ChatSessionRegistry;
+import ch.so.agi.gretl.copilot.session.ResponseContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Service
 public class ChatService {
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+
     private final ChatSessionRegistry sessionRegistry;
+    private final QueryEmbeddingService queryEmbeddingService;
     private final IntentClassifier intentClassifier;
     private final RetrievalService retrievalService;
     private final CopilotModelClient modelClient;
+    private final SemanticResponseCache responseCache;
     private final MarkdownRenderer markdownRenderer;
+    private final ChatPipelineProperties pipelineProperties;
+    private final Scheduler blockingScheduler;
+    private final StreamFrameCoalescer frameCoalescer;
+    private final SingleFlight<String, ResponseContext> contextFlights;
+    private final SingleFlight<GenerationKey, CopilotStreamSegment> generationFlights;
+    private final ChatPipelineProperties.Mode mode;
 
-    public ChatService(ChatSessionRegistry sessionRegistry, IntentClassifier intentClassifier,
-            RetrievalService retrievalService, CopilotModelClient modelClient, MarkdownRenderer markdownRenderer) {
+    public ChatService(ChatSessionRegistry sessionRegistry, QueryEmbeddingService queryEmbeddingService,
+            IntentClassifier intentClassifier, RetrievalService retrievalService, CopilotModelClient modelClient,
+            SemanticResponseCache responseCache, MarkdownRenderer markdownRenderer, ChatPipelineProperties pipelineProperties,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler blockingScheduler,
+            MeterRegistry meterRegistry) {
         this.sessionRegistry = sessionRegistry;
+        this.queryEmbeddingService = queryEmbeddingService;
         this.intentClassifier = intentClassifier;
         this.retrievalService = retrievalService;
         this.modelClient = modelClient;
+        this.responseCache = responseCache;
         this.markdownRenderer = markdownRenderer;
+        this.pipelineProperties = pipelineProperties;
+        this.blockingScheduler = blockingScheduler;
+        this.frameCoalescer = new StreamFrameCoalescer(pipelineProperties);
+        this.contextFlights = new SingleFlight<>("context", meterRegistry);
+        this.generationFlights = new SingleFlight<>("generation", meterRegistry);
+        this.mode = effectiveMode(pipelineProperties.getMode(), retrievalService);
     }
 
     public UUID handleUserMessage(String sessionId, String userMessage) {
@@ -46,6 +79,10 @@ public class ChatService {
         session.addMessage(message);
 
         ChatMessage assistantPlaceholder = new ChatMessage(ChatRole.ASSISTANT, "");
+        if (pipelineProperties.isSpeculative()) {
+            // Start classification and retrieval while the browser renders the fragment and opens the SSE stream.
+            assistantPlaceholder.attachResponseContext(prepareContext(userMessage).toFuture());
+        }
         session.addMessage(assistantPlaceholder);
         return assistantPlaceholder.getId();
     }
@@ -59,87 +96,135 @@ public class ChatService {
         int messageIndex = messages.indexOf(assistantMessage);
         String userMessage = messageIndex > 0 ? messages.get(messageIndex - 1).getContent() : "";
 
-        IntentClassification classification = intentClassifier.classify(userMessage);
-        System.out.println(classification.allLabels());
-        System.out.println("******* 1");
-        RetrievalResult retrievalResult = retrievalService.retrieve(userMessage, classification);
-        System.out.println("******* 2");
-        CopilotPrompt prompt = new CopilotPrompt(userMessage, classification, retrievalResult.documents());
+        Flux<ServerSentEvent<String>> response = Flux.defer(() -> {
+            MarkdownSection markdown = new MarkdownSection(markdownRenderer.openStream());
+            return awaitContext(assistantMessage, userMessage)
+                    .flatMapMany(context -> frameCoalescer.coalesce(streamModel(userMessage, context))
+                            .concatMap(segment -> mapSegment(sessionId, messageId, session, assistantMessage,
+                                    context.retrievalResult(), markdown, segment)))
+                    .concatWith(Flux.defer(() -> closeMarkdownSection(messageId, markdown)));
+        });
+
+        // The opening comment is written right away so the SSE connection is established (and proxies flush the
+        // headers) while classification and retrieval are still running.
+        return Flux.concat(Mono.just(toOpenEvent()), response, Mono.just(toCompleteEvent()));
+    }
+
+    private Mono<ResponseContext> awaitContext(ChatMessage assistantMessage, String userMessage) {
+        return assistantMessage.getResponseContext()
+                // A failed speculative context would be replayed on every reconnect; compute a fresh one instead.
+                .filter(future -> !future.isCancelled() && !future.isCompletedExceptionally())
+                .map(future -> Mono.fromFuture(future))
+                .orElseGet(() -> prepareContext(userMessage));
+    }
+
+    private Mono<ResponseContext> prepareContext(String userMessage) {
+        if (!pipelineProperties.isCoalesce()) {
+            return computeContext(userMessage);
+        }
+        return contextFlights.mono(QueryNormalizer.normalize(userMessage), () -> computeContext(userMessage));
+    }
+
+    private Mono<ResponseContext> computeContext(String userMessage) {
+        // The query embedding is computed once and shared by classification and retrieval.
+        return CancellationScope.fromCallable(() -> queryEmbeddingService.embed(userMessage), blockingScheduler)
+                .flatMap(embedding -> switch (mode) {
+                case SEQUENTIAL -> classify(userMessage, embedding)
+                        .flatMap(classification -> retrieve(userMessage, embedding, classification)
+                                .map(retrievalResult -> new ResponseContext(embedding, classification,
+                                        retrievalResult)));
+                case PARALLEL -> Mono.zip(classify(userMessage, embedding), retrieve(userMessage, embedding, null),
+                        (classification, retrievalResult) -> new ResponseContext(embedding, classification,
+                                retrievalResult));
+                });
+    }
+
+    private static ChatPipelineProperties.Mode effectiveMode(ChatPipelineProperties.Mode mode,
+            RetrievalService retrievalService) {
+        if (mode == ChatPipelineProperties.Mode.PARALLEL && retrievalService.usesClassification()) {
+            log.warn("Retrieval depends on the intent classification, running the pipeline sequentially instead of "
+                    + "in parallel");
+            return ChatPipelineProperties.Mode.SEQUENTIAL;
+        }
+        return mode;
+    }
+
+    private Mono<IntentClassification> classify(String userMessage, float[] embedding) {
+        return CancellationScope
+                .fromCallable(() -> intentClassifier.classify(userMessage, embedding), blockingScheduler)
+                .doOnNext(classification -> log.debug("Intent labels: {}", classification.allLabels()));
+    }
 
-        return modelClient.streamResponse(prompt)
-                .concatMap(segment -> mapSegment(sessionId, messageId, session, assistantMessage, retrievalResult, segment))
-                .concatWith(Mono.just(toCompleteEvent()));
+    private Mono<RetrievalResult> retrieve(String userMessage, float[] embedding,
+            IntentClassification classification) {
+        return CancellationScope.fromCallable(() -> retrievalService.retrieve(userMessage, embedding, classification),
+                blockingScheduler);
+    }
+
+    private Flux<CopilotStreamSegment> streamModel(String userMessage, ResponseContext context) {
+        CopilotPrompt prompt = new CopilotPrompt(userMessage, context.classification(),
+                context.retrievalResult().documents());
+        // Model clients may block while assembling their response, hence the subscription on the blocking scheduler.
+        Supplier<Flux<CopilotStreamSegment>> generation = () -> responseCache.stream(context.queryEmbedding(), prompt,
+                () -> Flux.defer(() -> modelClient.streamResponse(prompt)).subscribeOn(blockingScheduler));
+        if (!pipelineProperties.isCoalesce()) {
+            return generation.get();
+        }
+        GenerationKey key = new GenerationKey(QueryNormalizer.normalize(userMessage),
+                context.classification() != null ? context.classification().label() : null);
+        return generationFlights.flux(key, generation);
     }
 
     private Flux<ServerSentEvent<String>> mapSegment(String sessionId, UUID messageId, ChatSession session,
-            ChatMessage assistantMessage, RetrievalResult retrievalResult, CopilotStreamSegment segment) {
+            ChatMessage assistantMessage, RetrievalResult retrievalResult, MarkdownSection markdown,
+            CopilotStreamSegment segment) {
         return switch (segment.type()) {
-//        case TEXT -> {
-//            boolean wasEmptyBefore = assistantMessage.getContent().isBlank();
-//            assistantMessage.appendContent(segment.content());
-//            String markdownHtml = renderMarkdownHtml(messageId, assistantMessage, wasEmptyBefore);
-//            if (markdownHtml.isEmpty()) {
-//                yield Flux.empty();
-//            }
-//            yield Flux.just(toMessageEvent(markdownHtml));
-//        }
-//        case CODE_BLOCK -> {
-//            boolean wasEmptyBefore = assistantMessage.getContent().isBlank();
-//            session.registerBuildGradle(messageId, segment.content());
-//            assistantMessage.appendContent("\n\n```gradle\n" + segment.content() + "\n```");
-//            String codeId = "code-" + messageId;
-//            String codeHtml = buildCodeBlockHtml(sessionId, messageId, codeId, segment.content());
-//            String markdownHtml = renderMarkdownHtml(messageId, assistantMessage, wasEmptyBefore);
-//            if (markdownHtml.isEmpty()) {
-//                yield Flux.just(toMessageEvent(codeHtml));
-//            }
-//            yield Flux.just(toMessageEvent(codeHtml), toMessageEvent(markdownHtml));
-//        }
-//        case LINKS -> {
-//            String linksHtml = buildLinksHtml(retrievalResult.documents());
-//            boolean wasEmptyBefore = assistantMessage.getContent().isBlank();
-//            assistantMessage.appendContent("\n\n" + stripHtmlTags(linksHtml));
-//            String markdownHtml = renderMarkdownHtml(messageId, assistantMessage, wasEmptyBefore);
-//            if (markdownHtml.isEmpty()) {
-//                yield Flux.just(toMessageEvent(linksHtml));
-//            }
-//            yield Flux.just(toMessageEvent(linksHtml), toMessageEvent(markdownHtml));
-//        }
         case TEXT -> {
-            String token = segment.content();
-            System.out.println("token: " + token);
-            assistantMessage.appendContent(token + " ");
-            yield Flux.just(toMessageEvent(
-                    "<span class=\"assistant-token\">" + escapeHtml(token) + " </span>"));
+            assistantMessage.appendContent(segment.content());
+            yield toMarkdownEvents(messageId, markdown, markdown.stream().append(segment.content()));
         }
         case CODE_BLOCK -> {
             session.registerBuildGradle(messageId, segment.content());
             assistantMessage.appendContent("\n\n```gradle\n" + segment.content() + "\n```");
             String codeId = "code-" + messageId;
             String codeHtml = buildCodeBlockHtml(sessionId, messageId, codeId, segment.content());
-            yield Flux.just(toMessageEvent(codeHtml));
+            yield closeMarkdownSection(messageId, markdown).concatWith(Mono.just(toMessageEvent(codeHtml)));
         }
         case LINKS -> {
             String linksHtml = buildLinksHtml(retrievalResult.documents());
             assistantMessage.appendContent("\n\n" + stripHtmlTags(linksHtml));
-            yield Flux.just(toMessageEvent(linksHtml));
+            yield closeMarkdownSection(messageId, markdown).concatWith(Mono.just(toMessageEvent(linksHtml)));
         }
         };
     }
 
-    private String renderMarkdownHtml(UUID messageId, ChatMessage assistantMessage, boolean createElement) {
-        String rendered = markdownRenderer.render(assistantMessage.getContent());
-        if (rendered.isBlank()) {
-            return "";
-        }
+    /**
+     * Finalizes the open Markdown block of the current section. Text following a code block or the sources is
+     * rendered into a new section so it appears below them.
+     */
+    private Flux<ServerSentEvent<String>> closeMarkdownSection(UUID messageId, MarkdownSection markdown) {
+        Flux<ServerSentEvent<String>> events = toMarkdownEvents(messageId, markdown, markdown.stream().finish());
+        markdown.next(markdownRenderer.openStream());
+        return events;
+    }
 
-        return buildMarkdownHtml(messageId, rendered, createElement);
+    private Flux<ServerSentEvent<String>> toMarkdownEvents(UUID messageId, MarkdownSection markdown,
+            MarkdownStream.Update update) {
+        String html = buildMarkdownHtml(messageId, markdown, update);
+        if (html.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.just(toMessageEvent(html));
     }
 
     private ServerSentEvent<String> toMessageEvent(String html) {
         return ServerSentEvent.<String>builder().event("message").data(html).build();
     }
 
+    private ServerSentEvent<String> toOpenEvent() {
+        return ServerSentEvent.<String>builder().comment("stream-open").build();
+    }
+
     private ServerSentEvent<String> toCompleteEvent() {
         return ServerSentEvent.<String>builder().event("complete").data("").build();
     }
@@ -179,17 +264,35 @@ public class ChatService {
         return builder.toString();
     }
 
-    private String buildMarkdownHtml(UUID messageId, String renderedMarkdown, boolean createElement) {
+    private String buildMarkdownHtml(UUID messageId, MarkdownSection markdown, MarkdownStream.Update update) {
+        String elementId = "assistant-markdown-" + messageId + "-" + markdown.index();
         StringBuilder builder = new StringBuilder();
-        builder.append("<div id=\"assistant-markdown-").append(messageId).append("\" class=\"assistant-body__markdown\"");
-        if (!createElement) {
-            builder.append(" hx-swap-oob=\"innerHTML\"");
+        if (!markdown.started()) {
+            if (update.finishedHtml().isBlank() && update.openHtml().isBlank()) {
+                return "";
+            }
+            builder.append("<div id=\"").append(elementId).append("\" class=\"assistant-body__markdown\">");
+            builder.append("<div class=\"markdown-body\">");
+            builder.append("<div id=\"").append(elementId).append("-final\">").append(update.finishedHtml())
+                    .append("</div>");
+            builder.append("<div id=\"").append(elementId).append("-open\">").append(update.openHtml())
+                    .append("</div>");
+            builder.append("</div>");
+            builder.append("</div>");
+            markdown.markStarted(update.openHtml());
+            return builder.toString();
+        }
+
+        // Finished blocks are appended once, the open block replaces its previous rendering.
+        if (!update.finishedHtml().isEmpty()) {
+            builder.append("<div id=\"").append(elementId).append("-final\" hx-swap-oob=\"beforeend\">")
+                    .append(update.finishedHtml()).append("</div>");
+        }
+        if (!update.openHtml().equals(markdown.openHtml())) {
+            builder.append("<div id=\"").append(elementId).append("-open\" hx-swap-oob=\"innerHTML\">")
+                    .append(update.openHtml()).append("</div>");
+            markdown.markStarted(update.openHtml());
         }
-        builder.append(">");
-        builder.append("<div class=\"markdown-body\">");
-        builder.append(renderedMarkdown);
-        builder.append("</div>");
-        builder.append("</div>");
         return builder.toString();
     }
 
@@ -217,4 +320,49 @@ public class ChatService {
         return Mono.justOrEmpty(session.findBuildGradle(messageId))
                 .map(content -> content.getBytes(StandardCharsets.UTF_8));
     }
+
+    private record GenerationKey(String normalizedQuestion, String intentLabel) {
+    }
+
+    /**
+     * Rendering state of the Markdown section an assistant response is currently streaming into.
+     */
+    private static final class MarkdownSection {
+        private MarkdownStream stream;
+        private int index;
+        private boolean started;
+        private String openHtml = "";
+
+        private MarkdownSection(MarkdownStream stream) {
+            this.stream = stream;
+        }
+
+        MarkdownStream stream() {
+            return stream;
+        }
+
+        int index() {
+            return index;
+        }
+
+        boolean started() {
+            return started;
+        }
+
+        String openHtml() {
+            return openHtml;
+        }
+
+        void markStarted(String renderedOpenHtml) {
+            this.started = true;
+            this.openHtml = renderedOpenHtml;
+        }
+
+        void next(MarkdownStream nextStream) {
+            this.stream = nextStream;
+            this.index++;
+            this.started = false;
+            this.openHtml = "";
+        }
+    }
 }
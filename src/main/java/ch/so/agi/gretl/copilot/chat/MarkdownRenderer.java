@@ -5,6 +5,7 @@ import java.util.List;
 import org.commonmark.Extension;
 import org.commonmark.ext.gfm.tables.TablesExtension;
 import org.commonmark.node.Node;
+import org.commonmark.parser.IncludeSourceSpans;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.HtmlRenderer;
 import org.springframework.stereotype.Component;
@@ -12,12 +13,16 @@ import org.springframework.stereotype.Component;
 @Component
 public class MarkdownRenderer {
     private final Parser parser;
+    private final Parser streamingParser;
     private final HtmlRenderer renderer;
 
     public MarkdownRenderer() {
         List<Extension> extensions = List.of(TablesExtension.create());
         this.parser = Parser.builder().extensions(extensions).build();
-        this.renderer = HtmlRenderer.builder().extensions(extensions).build();
+        this.streamingParser = Parser.builder().extensions(extensions).includeSourceSpans(IncludeSourceSpans.BLOCKS)
+                .build();
+        // Model output and retrieved documents are untrusted: raw HTML is escaped, not passed to the page and htmx.
+        this.renderer = HtmlRenderer.builder().extensions(extensions).escapeHtml(true).sanitizeUrls(true).build();
     }
 
     public String render(String markdown) {
@@ -33,4 +38,11 @@ public class MarkdownRenderer {
         Node document = parser.parse(markdown);
         return renderer.render(document);
     }
+
+    /**
+     * Starts an incremental rendering for a message whose Markdown arrives in chunks.
+     */
+    public MarkdownStream openStream() {
+        return new MarkdownStream(streamingParser, renderer);
+    }
 }
@@ -0,0 +1,100 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.commonmark.node.Node;
+import org.commonmark.node.SourceSpan;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+
+/**
+ * Incremental Markdown rendering for a streamed message. Every top-level block that is followed by another block can
+ * no longer change and is rendered exactly once; only the trailing (still open) block is parsed and rendered again
+ * when more text arrives. Instances keep per-message state and are not thread-safe.
+ */
+public class MarkdownStream {
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+    private final StringBuilder openSource = new StringBuilder();
+
+    MarkdownStream(Parser parser, HtmlRenderer renderer) {
+        this.parser = parser;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Appends streamed text and returns the HTML of the blocks finished by it together with the current rendering of
+     * the open trailing block.
+     */
+    public Update append(String text) {
+        if (text == null || text.isEmpty()) {
+            return new Update("", renderOpen());
+        }
+        openSource.append(text);
+
+        List<Node> blocks = topLevelBlocks(parser.parse(openSource.toString()));
+        if (blocks.size() < 2) {
+            return new Update("", blocks.isEmpty() ? "" : renderer.render(blocks.get(0)));
+        }
+
+        StringBuilder finished = new StringBuilder();
+        for (Node block : blocks.subList(0, blocks.size() - 1)) {
+            finished.append(renderer.render(block));
+        }
+        Node openBlock = blocks.get(blocks.size() - 1);
+        openSource.delete(0, lineOffset(openSource, startLine(openBlock)));
+        return new Update(finished.toString(), renderer.render(openBlock));
+    }
+
+    /**
+     * Treats the open trailing block as finished, e.g. at the end of the stream or before a code block is inserted.
+     */
+    public Update finish() {
+        String rendered = renderOpen();
+        openSource.setLength(0);
+        return new Update(rendered, "");
+    }
+
+    private String renderOpen() {
+        if (openSource.toString().isBlank()) {
+            return "";
+        }
+        return renderer.render(parser.parse(openSource.toString()));
+    }
+
+    private List<Node> topLevelBlocks(Node document) {
+        List<Node> blocks = new ArrayList<>();
+        for (Node child = document.getFirstChild(); child != null; child = child.getNext()) {
+            blocks.add(child);
+        }
+        return blocks;
+    }
+
+    private int startLine(Node block) {
+        List<SourceSpan> spans = block.getSourceSpans();
+        return spans.isEmpty() ? 0 : spans.get(0).getLineIndex();
+    }
+
+    private int lineOffset(CharSequence source, int lineIndex) {
+        int line = 0;
+        int index = 0;
+        while (line < lineIndex && index < source.length()) {
+            char ch = source.charAt(index++);
+            if (ch == '\r' && index < source.length() && source.charAt(index) == '\n') {
+                index++;
+            }
+            if (ch == '\n' || ch == '\r') {
+                line++;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param finishedHtml HTML of blocks that became final with this update; to be appended once
+     * @param openHtml     current HTML of the open trailing block; replaces the previous rendering
+     */
+    public record Update(String finishedHtml, String openHtml) {
+    }
+}
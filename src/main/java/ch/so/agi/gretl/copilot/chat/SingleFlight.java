@@ -0,0 +1,52 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces concurrent executions with equal keys. The first caller starts the work; callers arriving while it is
+ * still in flight subscribe to the same execution and get the already emitted elements replayed. The upstream is
+ * cancelled only once every subscriber is gone, and the key is released as soon as the execution terminates.
+ */
+class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flux<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    SingleFlight(String stage, MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("gretl.copilot.singleflight.coalesced").tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    Flux<V> flux(K key, Supplier<Flux<V>> supplier) {
+        return Flux.defer(() -> {
+            Flux<V> existing = inFlight.get(key);
+            if (existing != null) {
+                coalesced.increment();
+                return existing;
+            }
+            AtomicReference<Flux<V>> self = new AtomicReference<>();
+            Flux<V> shared = Flux.defer(supplier)
+                    .doFinally(signal -> inFlight.remove(key, self.get()))
+                    .replay()
+                    .refCount();
+            self.set(shared);
+            Flux<V> winner = inFlight.putIfAbsent(key, shared);
+            if (winner != null) {
+                coalesced.increment();
+                return winner;
+            }
+            return shared;
+        });
+    }
+
+    Mono<V> mono(K key, Supplier<Mono<V>> supplier) {
+        return flux(key, () -> supplier.get().flux()).singleOrEmpty();
+    }
+}
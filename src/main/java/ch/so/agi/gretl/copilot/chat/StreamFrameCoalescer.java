@@ -0,0 +1,71 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment;
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment.SegmentType;
+import reactor.core.publisher.Flux;
+
+/**
+ * Merges streamed TEXT tokens into larger frames before they are rendered and sent as SSE events. A frame is sent
+ * when the configured time window since its first token has passed or as soon as its text reaches the byte budget,
+ * whichever comes first; it exceeds the budget by at most its last token. Any other segment type ends the current
+ * frame immediately so code blocks and sources are never delayed or reordered.
+ */
+class StreamFrameCoalescer {
+    private final ChatPipelineProperties properties;
+
+    StreamFrameCoalescer(ChatPipelineProperties properties) {
+        this.properties = properties;
+    }
+
+    Flux<CopilotStreamSegment> coalesce(Flux<CopilotStreamSegment> segments) {
+        if (properties.getFrameWindow().isZero() || properties.getFrameWindow().isNegative()) {
+            return segments;
+        }
+        int maxBytes = Math.max(1, properties.getFrameMaxBytes());
+        return Flux.defer(() -> {
+            // A window is closed by (and includes) a non-text segment or the token that fills the byte budget; the
+            // timeout flushes the pending buffer of a window that is still open. The bytes are counted per window, so
+            // after a timeout flush the budget may close the window before the next frame is full, never later.
+            int[] pendingBytes = { 0 };
+            return segments.windowUntil(segment -> {
+                if (segment.type() != SegmentType.TEXT) {
+                    pendingBytes[0] = 0;
+                    return true;
+                }
+                pendingBytes[0] += segment.content().getBytes(StandardCharsets.UTF_8).length;
+                if (pendingBytes[0] >= maxBytes) {
+                    pendingBytes[0] = 0;
+                    return true;
+                }
+                return false;
+            }).concatMap(window -> window.bufferTimeout(maxBytes, properties.getFrameWindow())
+                    .concatMapIterable(this::merge));
+        });
+    }
+
+    private List<CopilotStreamSegment> merge(List<CopilotStreamSegment> buffer) {
+        List<CopilotStreamSegment> frames = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (CopilotStreamSegment segment : buffer) {
+            if (segment.type() != SegmentType.TEXT) {
+                flush(frames, text);
+                frames.add(segment);
+                continue;
+            }
+            text.append(segment.content());
+        }
+        flush(frames, text);
+        return frames;
+    }
+
+    private void flush(List<CopilotStreamSegment> frames, StringBuilder text) {
+        if (text.length() > 0) {
+            frames.add(new CopilotStreamSegment(SegmentType.TEXT, text.toString()));
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ch.so.agi.gretl.copilot.concurrent;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+/**
+ * Runs queries whose statements are cancelled on the database when the surrounding {@link CancellationScope} is
+ * cancelled. Exceptions are translated by the {@link JdbcTemplate} as usual.
+ */
+public final class CancellableJdbc {
+
+    private CancellableJdbc() {
+    }
+
+    public static <T> List<T> query(JdbcTemplate jdbcTemplate, String sql, PreparedStatementSetter setter,
+            RowMapper<T> rowMapper) {
+        CancellationScope scope = CancellationScope.current();
+        return jdbcTemplate.execute((ConnectionCallback<List<T>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                    CancellationScope.Registration registration = scope.onCancel(() -> cancel(statement))) {
+                if (scope.isCancelled()) {
+                    return List.of();
+                }
+                setter.setValues(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return new RowMapperResultSetExtractor<>(rowMapper).extractData(resultSet);
+                }
+            }
+        });
+    }
+
+    private static void cancel(PreparedStatement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Unable to cancel statement", ex);
+        }
+    }
+}
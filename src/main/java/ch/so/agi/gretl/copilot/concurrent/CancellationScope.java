@@ -0,0 +1,115 @@
+package ch.so.agi.gretl.copilot.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Carries the cancellation of a reactive subscription into blocking code. A scope is bound to the worker thread while
+ * a blocking stage runs; the stage can poll {@link #isCancelled()} between units of work and register callbacks that
+ * abort in-flight I/O (e.g. {@link java.sql.Statement#cancel()}). Cancelling the scope also interrupts the worker
+ * thread so interruptible HTTP calls return early.
+ */
+public final class CancellationScope {
+
+    private static final Logger log = LoggerFactory.getLogger(CancellationScope.class);
+
+    private static final ThreadLocal<CancellationScope> CURRENT = new ThreadLocal<>();
+
+    private static final CancellationScope NONE = new CancellationScope();
+
+    private final CopyOnWriteArrayList<Runnable> callbacks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+    private Thread runner;
+
+    /**
+     * Wraps a blocking call into a {@link Mono} that runs on the given scheduler. Cancelling the subscription cancels
+     * the scope the call runs in.
+     */
+    public static <T> Mono<T> fromCallable(Callable<T> task, Scheduler scheduler) {
+        return Mono.defer(() -> {
+            CancellationScope scope = new CancellationScope();
+            return Mono.fromCallable(() -> scope.run(task)).subscribeOn(scheduler).doOnCancel(scope::cancel);
+        });
+    }
+
+    /**
+     * Returns the scope bound to the current thread, or a scope that is never cancelled.
+     */
+    public static CancellationScope current() {
+        CancellationScope scope = CURRENT.get();
+        return scope == null ? NONE : scope;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a callback that is run when the scope is cancelled. If the scope already is cancelled the callback
+     * runs immediately. Closing the returned registration removes the callback again.
+     */
+    public Registration onCancel(Runnable callback) {
+        if (this == NONE) {
+            return () -> {
+            };
+        }
+        callbacks.add(callback);
+        if (cancelled) {
+            runQuietly(callback);
+        }
+        return () -> callbacks.remove(callback);
+    }
+
+    void cancel() {
+        if (this == NONE || cancelled) {
+            return;
+        }
+        cancelled = true;
+        callbacks.forEach(this::runQuietly);
+        synchronized (this) {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    private <T> T run(Callable<T> task) throws Exception {
+        CancellationScope previous = CURRENT.get();
+        synchronized (this) {
+            runner = Thread.currentThread();
+        }
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.set(previous);
+            synchronized (this) {
+                runner = null;
+                // Do not leak an interrupt caused by this scope into the next task of the pooled thread.
+                if (cancelled) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException ex) {
+            log.debug("Cancellation callback failed", ex);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,8 @@
+package ch.so.agi.gretl.copilot.corpus;
+
+/**
+ * Published when the corpus in the {@code rag} schema changed, typically after a re-ingest. Caches and in-memory
+ * indexes derived from the corpus listen to it to invalidate or rebuild themselves.
+ */
+public record CorpusChangedEvent(CorpusVersion previous, CorpusVersion current) {
+}
@@ -0,0 +1,27 @@
+package ch.so.agi.gretl.copilot.corpus;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gretl.copilot.corpus")
+public class CorpusProperties {
+    private boolean watch = true;
+    private Duration pollInterval = Duration.ofMinutes(1);
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+}
@@ -0,0 +1,30 @@
+package ch.so.agi.gretl.copilot.corpus;
+
+import java.time.Instant;
+
+/**
+ * Cheap fingerprint of the ingested corpus. The ingester truncates the tables with {@code RESTART IDENTITY}, so the
+ * counts and maximum ids repeat across re-ingests. Every write to the corpus tables, embeddings included, bumps
+ * {@code rag.corpus_revision} through the triggers of migration V4; its time tells databases rebuilt from scratch
+ * apart.
+ */
+public record CorpusVersion(long chunkCount, long chunkMaxId, long exampleCount, long exampleMaxId, long revision,
+        Instant revisedAt) {
+
+    /**
+     * Stable 64 bit hash of all fields, stored alongside data derived from this version.
+     */
+    public long fingerprint() {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + chunkCount;
+        hash = 31 * hash + chunkMaxId;
+        hash = 31 * hash + exampleCount;
+        hash = 31 * hash + exampleMaxId;
+        hash = 31 * hash + revision;
+        if (revisedAt != null) {
+            hash = 31 * hash + revisedAt.getEpochSecond();
+            hash = 31 * hash + revisedAt.getNano();
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,114 @@
+package ch.so.agi.gretl.copilot.corpus;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Polls the {@link CorpusVersion} of the {@code rag} schema and publishes a {@link CorpusChangedEvent} whenever it
+ * differs from the previous poll. With {@code gretl.copilot.corpus.watch=false} the version is only read on demand.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class CorpusVersionMonitor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CorpusVersionMonitor.class);
+
+    private static final String VERSION_QUERY = """
+            SELECT
+              (SELECT count(*) FROM rag.doc_chunks)             AS chunk_count,
+              (SELECT coalesce(max(id), 0) FROM rag.doc_chunks)    AS chunk_max_id,
+              (SELECT count(*) FROM rag.task_examples)          AS example_count,
+              (SELECT coalesce(max(id), 0) FROM rag.task_examples) AS example_max_id,
+              r.revision,
+              r.changed_at
+            FROM rag.corpus_revision r
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CorpusProperties properties;
+    private final Scheduler scheduler;
+    private volatile CorpusVersion current;
+    private volatile boolean failing;
+    private Disposable polling;
+
+    public CorpusVersionMonitor(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+            CorpusProperties properties, @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!properties.isWatch()) {
+            return;
+        }
+        polling = Flux.interval(Duration.ZERO, properties.getPollInterval(), scheduler)
+                .subscribe(tick -> check());
+    }
+
+    @Override
+    public void destroy() {
+        if (polling != null) {
+            polling.dispose();
+        }
+    }
+
+    /**
+     * The version seen by the last successful poll, empty before the first one.
+     */
+    public Optional<CorpusVersion> current() {
+        return Optional.ofNullable(current);
+    }
+
+    /**
+     * Reads the version now and publishes a {@link CorpusChangedEvent} if it differs from the previous one. The very
+     * first read only records the version.
+     */
+    public synchronized Optional<CorpusVersion> check() {
+        CorpusVersion version;
+        try {
+            version = jdbcTemplate.queryForObject(VERSION_QUERY, (rs, rowNum) -> {
+                Timestamp changedAt = rs.getTimestamp("changed_at");
+                return new CorpusVersion(rs.getLong("chunk_count"), rs.getLong("chunk_max_id"),
+                        rs.getLong("example_count"), rs.getLong("example_max_id"), rs.getLong("revision"),
+                        changedAt != null ? changedAt.toInstant() : null);
+            });
+        } catch (DataAccessException ex) {
+            if (!failing) {
+                log.warn("Unable to read corpus version", ex);
+                failing = true;
+            }
+            return Optional.ofNullable(current);
+        }
+        failing = false;
+
+        CorpusVersion previous = current;
+        current = version;
+        if (previous != null && !Objects.equals(previous, version)) {
+            log.info("Corpus changed from {} to {}", previous, version);
+            eventPublisher.publishEvent(new CorpusChangedEvent(previous, version));
+        }
+        return Optional.ofNullable(version);
+    }
+}
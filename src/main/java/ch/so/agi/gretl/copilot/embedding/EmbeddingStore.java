@@ -0,0 +1,178 @@
+package ch.so.agi.gretl.copilot.embedding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.pgvector.PGvector;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersion;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersionMonitor;
+import ch.so.agi.gretl.copilot.vector.EmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.EmbeddingStoreFile;
+import ch.so.agi.gretl.copilot.vector.HeapEmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.MappedEmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.VectorIndexProperties;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Chunk and example embeddings as memory-mapped {@link EmbeddingStoreFile}s in
+ * {@code gretl.copilot.vector.store-directory}. A file is reused as long as it was written for the current
+ * {@link CorpusVersion}, so a restart maps it instead of exporting the vectors from Postgres again. After a re-ingest
+ * the next access exports and rewrites it.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class EmbeddingStore implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CorpusVersionMonitor corpusVersionMonitor;
+    private final VectorIndexProperties properties;
+    private final Scheduler scheduler;
+    private final Map<Source, Loaded> loaded = new ConcurrentHashMap<>();
+
+    public EmbeddingStore(JdbcTemplate jdbcTemplate, CorpusVersionMonitor corpusVersionMonitor,
+            VectorIndexProperties properties,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.corpusVersionMonitor = corpusVersionMonitor;
+        this.properties = properties;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // Warm up in the background so the first question does not pay for the export.
+        Mono.fromRunnable(this::examples).subscribeOn(scheduler).subscribe(null,
+                ex -> log.warn("Failed to preload example embeddings", ex));
+    }
+
+    /**
+     * Embeddings of {@code rag.doc_chunks}, empty if there are none or the database cannot be read.
+     */
+    public Optional<EmbeddingMatrix> chunks() {
+        return load(Source.CHUNKS);
+    }
+
+    /**
+     * Embeddings of {@code rag.task_examples}, empty if there are none or the database cannot be read.
+     */
+    public Optional<EmbeddingMatrix> examples() {
+        return load(Source.EXAMPLES);
+    }
+
+    private Optional<EmbeddingMatrix> load(Source source) {
+        synchronized (source) {
+            Optional<CorpusVersion> version = corpusVersionMonitor.current().or(corpusVersionMonitor::check);
+            Path file = properties.getStoreDirectory().resolve(source.fileName);
+            if (version.isEmpty()) {
+                // Database not reachable: serve whatever was stored last.
+                return Optional.ofNullable(loaded.get(source)).map(Loaded::matrix)
+                        .or(() -> open(file).map(EmbeddingMatrix.class::cast));
+            }
+
+            long fingerprint = version.get().fingerprint();
+            Loaded current = loaded.get(source);
+            if (current != null && current.fingerprint() == fingerprint) {
+                return Optional.of(current.matrix());
+            }
+
+            Optional<EmbeddingMatrix> matrix = open(file)
+                    .filter(mapped -> mapped.sourceVersion() == fingerprint)
+                    .map(EmbeddingMatrix.class::cast)
+                    .or(() -> export(source, file, fingerprint));
+            matrix.ifPresentOrElse(value -> loaded.put(source, new Loaded(fingerprint, value)),
+                    () -> loaded.remove(source));
+            return matrix;
+        }
+    }
+
+    private Optional<MappedEmbeddingMatrix> open(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            MappedEmbeddingMatrix matrix = EmbeddingStoreFile.open(file);
+            log.debug("Mapped {} embeddings from {}", matrix.size(), file);
+            return Optional.of(matrix);
+        } catch (IOException ex) {
+            log.warn("Ignoring unreadable embedding store {}", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<EmbeddingMatrix> export(Source source, Path file, long fingerprint) {
+        List<Long> ids = new ArrayList<>();
+        List<float[]> rows = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(source.query, rs -> {
+                ids.add(rs.getLong("id"));
+                rows.add(new PGvector(rs.getString("embedding")).toArray());
+            });
+        } catch (DataAccessException ex) {
+            log.warn("Unable to export {} embeddings", source, ex);
+            return Optional.empty();
+        }
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long[] idArray = ids.stream().mapToLong(Long::longValue).toArray();
+        int dimensions = rows.get(0).length;
+        try {
+            EmbeddingStoreFile.write(file, fingerprint, idArray, rows, dimensions);
+            MappedEmbeddingMatrix matrix = EmbeddingStoreFile.open(file);
+            log.info("Exported {} {} embeddings to {} in {} ms", matrix.size(), source, file,
+                    System.currentTimeMillis() - start);
+            return Optional.of(matrix);
+        } catch (IOException ex) {
+            log.warn("Unable to write embedding store {}, keeping the vectors on the heap", file, ex);
+            return Optional.of(HeapEmbeddingMatrix.normalized(idArray, rows, dimensions));
+        }
+    }
+
+    private enum Source {
+        CHUNKS("chunks.emb", """
+                SELECT id, embedding::text AS embedding
+                FROM rag.doc_chunks
+                WHERE embedding IS NOT NULL
+                ORDER BY id
+                """),
+        EXAMPLES("examples.emb", """
+                SELECT id, embedding::text AS embedding
+                FROM rag.task_examples
+                WHERE embedding IS NOT NULL
+                ORDER BY id
+                """);
+
+        private final String fileName;
+        private final String query;
+
+        Source(String fileName, String query) {
+            this.fileName = fileName;
+            this.query = query;
+        }
+    }
+
+    private record Loaded(long fingerprint, EmbeddingMatrix matrix) {
+    }
+}
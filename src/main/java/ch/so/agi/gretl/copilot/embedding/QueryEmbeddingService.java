@@ -0,0 +1,53 @@
+package ch.so.agi.gretl.copilot.embedding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Computes the embedding of a user question exactly once per message. The resulting vector is handed to both the
+ * intent classifier and the retrieval service instead of letting each of them call the embedding model on its own.
+ */
+@Component
+public class QueryEmbeddingService {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryEmbeddingService.class);
+
+    private static final float[] EMPTY = new float[0];
+
+    private final ObjectProvider<EmbeddingModel> embeddingModelProvider;
+
+    public QueryEmbeddingService(ObjectProvider<EmbeddingModel> embeddingModelProvider) {
+        this.embeddingModelProvider = embeddingModelProvider;
+    }
+
+    /**
+     * Returns the embedding of the given text or an empty array if no embedding could be created (blank input, no
+     * embedding model configured or a failing model call).
+     */
+    public float[] embed(String text) {
+        if (!StringUtils.hasText(text)) {
+            return EMPTY;
+        }
+        EmbeddingModel embeddingModel = embeddingModelProvider.getIfAvailable();
+        if (embeddingModel == null) {
+            log.debug("No EmbeddingModel available; skipping query embedding");
+            return EMPTY;
+        }
+        try {
+            float[] embedding = embeddingModel.embed(new Document(text));
+            if (log.isDebugEnabled()) {
+                log.debug("Query embedding created with {} dimensions via {}", embedding.length,
+                        embeddingModel.getClass().getSimpleName());
+            }
+            return embedding;
+        } catch (Exception ex) {
+            log.error("Failed to create query embedding", ex);
+            return EMPTY;
+        }
+    }
+}
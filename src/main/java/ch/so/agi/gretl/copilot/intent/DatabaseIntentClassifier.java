@@ -5,50 +5,114 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import com.pgvector.PGvector;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import ch.so.agi.gretl.copilot.concurrent.CancellableJdbc;
+import ch.so.agi.gretl.copilot.concurrent.CancellationScope;
+import ch.so.agi.gretl.copilot.embedding.QueryEmbeddingService;
+
 @Component
 @ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
 public class DatabaseIntentClassifier implements IntentClassifier {
 
     private static final Logger log = LoggerFactory.getLogger(DatabaseIntentClassifier.class);
 
-    private static final String INTENT_QUERY = """
+    /**
+     * Nearest examples, ordered by the expression of the {@code halfvec} HNSW index of migration V3.
+     */
+    static final String INTENT_QUERY = """
             SELECT
                 task_name,
                 title,
                 explanation,
-                1 - (embedding <=> ?) AS similarity
+                1 - (embedding::halfvec(3072) <=> ?::halfvec(3072)) AS similarity
             FROM rag.task_examples
             WHERE embedding IS NOT NULL
-            ORDER BY embedding <=> ?
+            ORDER BY embedding::halfvec(3072) <=> ?::halfvec(3072)
             LIMIT ?
             """;
 
-    private final JdbcClient jdbcClient;
-    private final EmbeddingModel embeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryEmbeddingService queryEmbeddingService;
+    private final IntentExampleStore exampleStore;
+    private final TaskNameDictionary taskNameDictionary;
     private final IntentClassifierProperties properties;
-    public DatabaseIntentClassifier(JdbcClient jdbcClient, EmbeddingModel embeddingModel,
-            IntentClassifierProperties properties) {
-        this.jdbcClient = jdbcClient;
-        this.embeddingModel = embeddingModel;
+    private final MeterRegistry meterRegistry;
+    private final Counter taskNameHits;
+    private final Counter taskNameMisses;
+
+    public DatabaseIntentClassifier(JdbcTemplate jdbcTemplate, QueryEmbeddingService queryEmbeddingService,
+            IntentExampleStore exampleStore, TaskNameDictionary taskNameDictionary,
+            IntentClassifierProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queryEmbeddingService = queryEmbeddingService;
+        this.exampleStore = exampleStore;
+        this.taskNameDictionary = taskNameDictionary;
         this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.taskNameHits = Counter.builder("gretl.copilot.intent.fastpath").tag("outcome", "hit")
+                .description("Messages classified by a literal task name").register(meterRegistry);
+        this.taskNameMisses = Counter.builder("gretl.copilot.intent.fastpath").tag("outcome", "miss")
+                .description("Messages without a literal task name").register(meterRegistry);
     }
 
     @Override
     public IntentClassification classify(String userMessage) {
+        return classifyByTaskName(userMessage)
+                .orElseGet(() -> classifyByExamples(userMessage, queryEmbeddingService.embed(userMessage)));
+    }
+
+    @Override
+    public IntentClassification classify(String userMessage, float[] embedding) {
+        return classifyByTaskName(userMessage).orElseGet(() -> classifyByExamples(userMessage, embedding));
+    }
+
+    /**
+     * Fast path for messages that name tasks literally: the first named task is the primary label, further ones are
+     * secondary labels, all with {@code taskNameConfidence}.
+     */
+    private Optional<IntentClassification> classifyByTaskName(String userMessage) {
+        if (!properties.isTaskNameFastPath() || !StringUtils.hasText(userMessage)) {
+            return Optional.empty();
+        }
+        Optional<TaskNameMatcher> matcher = taskNameDictionary.current();
+        if (matcher.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> taskNames = matcher.get().find(userMessage);
+        if (taskNames.isEmpty()) {
+            taskNameMisses.increment();
+            return Optional.empty();
+        }
+        taskNameHits.increment();
+        double confidence = clamp(properties.getTaskNameConfidence());
+        List<IntentLabel> secondaryLabels = taskNames.stream().skip(1)
+                .limit(Math.max(0, properties.getMaxLabels() - 1))
+                .map(taskName -> new IntentLabel(toLabel(taskName), confidence)).toList();
+        if (log.isDebugEnabled()) {
+            log.debug("Message names the tasks {}", taskNames);
+        }
+        return Optional.of(new IntentClassification(toLabel(taskNames.get(0)), confidence,
+                "Task im Text genannt: " + String.join(", ", taskNames), secondaryLabels));
+    }
+
+    private IntentClassification classifyByExamples(String userMessage, float[] embedding) {
         if (log.isDebugEnabled()) {
             String preview = userMessage == null ? "" : userMessage.substring(0, Math.min(userMessage.length(), 120));
             log.debug("classify() invoked with message preview: '{}'", preview);
@@ -58,8 +122,7 @@ public class DatabaseIntentClassifier implements IntentClassifier {
                     "Leere Benutzereingabe – kein Intent bestimmbar.", List.of());
         }
 
-        float[] embedding = embed(userMessage);
-        if (embedding.length == 0) {
+        if (embedding == null || embedding.length == 0) {
             return fallback("Embedding konnte nicht erzeugt werden.");
         }
 
@@ -71,15 +134,14 @@ public class DatabaseIntentClassifier implements IntentClassifier {
         if (candidates.isEmpty()) {
             return fallback("Keine passenden Intent-Beispiele in der Datenbank gefunden.");
         }
-        
-        System.out.println(candidates);
 
         IntentCandidate best = candidates.get(0);
         double confidence = computeConfidence(candidates);
         String rationale = buildRationale(candidates);
+        if (log.isDebugEnabled()) {
+            log.debug("Intent candidates {} with confidence {}", candidates, confidence);
+        }
 
-        System.out.println("confidence: " + confidence);
-        
         if (confidence < properties.getMinConfidence()) {
             if (log.isDebugEnabled()) {
                 log.debug("Confidence {} below threshold {}; using fallback", confidence, properties.getMinConfidence());
@@ -104,43 +166,54 @@ public class DatabaseIntentClassifier implements IntentClassifier {
                 List.of());
     }
 
-    private float[] embed(String text) {
-        if (log.isDebugEnabled()) {
-            log.debug("embed() generating embedding via {}", embeddingModel.getClass().getSimpleName());
-        }
-        try {
-            Document document = new Document(text);
-            return embeddingModel.embed(document);
-        } catch (Exception ex) {
-            log.error("Failed to create intent embedding", ex);
-            return new float[0];
-        }
-    }
-
+    /**
+     * The nearest examples, from the {@link IntentExampleStore} once it is loaded and from the database before.
+     */
     private List<IntentCandidate> fetchCandidates(float[] embedding, int limit) {
-        System.out.println("****************");
         if (limit <= 0) {
             return List.of();
         }
+        long start = System.nanoTime();
+        Optional<IntentExamples> examples = exampleStore.current()
+                .filter(loaded -> loaded.dimensions() == embedding.length);
+        List<IntentCandidate> results = examples.isPresent()
+                ? fetchStoredCandidates(examples.get(), embedding, limit)
+                : queryCandidates(embedding, limit);
+        Timer.builder("gretl.copilot.intent.search").tag("source", examples.isPresent() ? "memory" : "database")
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        List<IntentCandidate> sorted = results.stream()
+                .sorted(Comparator.comparingDouble(IntentCandidate::similarity).reversed())
+                .toList();
+        if (log.isDebugEnabled()) {
+            log.debug("fetchCandidates() received {} candidates from {}", sorted.size(),
+                    examples.isPresent() ? "memory" : "rag.task_examples");
+        }
+        return sorted;
+    }
+
+    private List<IntentCandidate> fetchStoredCandidates(IntentExamples examples, float[] embedding, int limit) {
+        return examples.nearest(embedding, limit).stream()
+                .map(neighbour -> new IntentCandidate(neighbour.example().taskName(), neighbour.example().title(),
+                        neighbour.example().explanation(), normalizeScore(neighbour.similarity())))
+                .toList();
+    }
+
+    private List<IntentCandidate> queryCandidates(float[] embedding, int limit) {
         if (log.isDebugEnabled()) {
             log.debug("fetchCandidates() querying rag.task_examples with topK={}", limit);
         }
         try {
-            List<IntentCandidate> results = jdbcClient.sql(INTENT_QUERY)
-                    .param(new PGvector(embedding))
-                    .param(new PGvector(embedding))
-                    .param(limit)
-                    .query(intentRowMapper())
-                    .list();
-            List<IntentCandidate> sorted = results.stream()
-                    .sorted(Comparator.comparingDouble(IntentCandidate::similarity).reversed())
-                    .toList();
-            if (log.isDebugEnabled()) {
-                log.debug("fetchCandidates() received {} candidates", sorted.size());
-            }
-            return sorted;
+            return CancellableJdbc.query(jdbcTemplate, INTENT_QUERY, statement -> {
+                statement.setObject(1, new PGvector(embedding));
+                statement.setObject(2, new PGvector(embedding));
+                statement.setInt(3, limit);
+            }, intentRowMapper());
         } catch (DataAccessException ex) {
-            log.error("Failed to run intent classification query", ex);
+            if (CancellationScope.current().isCancelled()) {
+                log.debug("Intent classification query cancelled");
+            } else {
+                log.error("Failed to run intent classification query", ex);
+            }
             return List.of();
         }
     }
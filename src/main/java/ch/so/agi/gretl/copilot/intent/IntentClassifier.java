@@ -2,4 +2,12 @@ package ch.so.agi.gretl.copilot.intent;
 
 public interface IntentClassifier {
     IntentClassification classify(String userMessage);
+
+    /**
+     * Classifies the message using an embedding that was already computed for it. An empty array means that no
+     * embedding is available. Implementations that do not work with embeddings can rely on the default.
+     */
+    default IntentClassification classify(String userMessage, float[] queryEmbedding) {
+        return classify(userMessage);
+    }
 }
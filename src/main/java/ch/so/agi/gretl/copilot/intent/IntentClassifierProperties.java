@@ -10,6 +10,8 @@ public class IntentClassifierProperties {
     private double fallbackConfidence = 0.25;
     private int maxLabels = 3;
     private double secondaryMinConfidence = 0.35;
+    private boolean taskNameFastPath = true;
+    private double taskNameConfidence = 0.95;
 
     public int getTopK() {
         return topK;
@@ -58,4 +60,23 @@ public class IntentClassifierProperties {
     public void setSecondaryMinConfidence(double secondaryMinConfidence) {
         this.secondaryMinConfidence = secondaryMinConfidence;
     }
-}
\ No newline at end of file
+
+    /**
+     * Classify messages that name a GRETL task literally by that name, without an embedding or example lookup.
+     */
+    public boolean isTaskNameFastPath() {
+        return taskNameFastPath;
+    }
+
+    public void setTaskNameFastPath(boolean taskNameFastPath) {
+        this.taskNameFastPath = taskNameFastPath;
+    }
+
+    public double getTaskNameConfidence() {
+        return taskNameConfidence;
+    }
+
+    public void setTaskNameConfidence(double taskNameConfidence) {
+        this.taskNameConfidence = taskNameConfidence;
+    }
+}
@@ -0,0 +1,7 @@
+package ch.so.agi.gretl.copilot.intent;
+
+/**
+ * The metadata of a {@code rag.task_examples} row.
+ */
+public record IntentExample(long id, String taskName, String title, String explanation) {
+}
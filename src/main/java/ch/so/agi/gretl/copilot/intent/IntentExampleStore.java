@@ -0,0 +1,135 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersion;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersionMonitor;
+import ch.so.agi.gretl.copilot.embedding.EmbeddingStore;
+import ch.so.agi.gretl.copilot.vector.EmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.HeapEmbeddingMatrix;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * All {@code rag.task_examples} on the heap as {@link IntentExamples}: the embeddings of the {@link EmbeddingStore}
+ * copied into one contiguous matrix and the metadata of the rows. Loaded in the background at startup and reloaded
+ * when the corpus changes, so classifying a message needs no database round trip.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class IntentExampleStore implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IntentExampleStore.class);
+
+    private static final String EXAMPLES_QUERY = """
+            SELECT id, task_name, title, explanation
+            FROM rag.task_examples
+            WHERE embedding IS NOT NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingStore embeddingStore;
+    private final CorpusVersionMonitor corpusVersionMonitor;
+    private final Scheduler scheduler;
+    private volatile Snapshot snapshot;
+
+    public IntentExampleStore(JdbcTemplate jdbcTemplate, EmbeddingStore embeddingStore,
+            CorpusVersionMonitor corpusVersionMonitor,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingStore = embeddingStore;
+        this.corpusVersionMonitor = corpusVersionMonitor;
+        this.scheduler = scheduler;
+        Gauge.builder("gretl.copilot.intent.examples", this,
+                store -> store.snapshot == null ? 0 : store.snapshot.examples().size()).register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        reloadAsync();
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void onCorpusChanged() {
+        reloadAsync();
+    }
+
+    /**
+     * The examples of the last load, empty until the first load finished or if there are none. Never blocks; a
+     * corpus change is picked up by the reload it triggers.
+     */
+    public Optional<IntentExamples> current() {
+        Snapshot current = snapshot;
+        return current == null ? Optional.empty() : Optional.of(current.examples());
+    }
+
+    private void reloadAsync() {
+        Mono.fromRunnable(this::load).subscribeOn(scheduler).subscribe(null,
+                ex -> log.warn("Failed to load intent examples", ex));
+    }
+
+    private synchronized void load() {
+        Optional<CorpusVersion> version = corpusVersionMonitor.current().or(corpusVersionMonitor::check);
+        Snapshot current = snapshot;
+        if (version.isEmpty() || (current != null && current.fingerprint() == version.get().fingerprint())) {
+            return;
+        }
+        Optional<EmbeddingMatrix> embeddings = embeddingStore.examples();
+        if (embeddings.isEmpty()) {
+            log.info("No example embeddings available, intent classification stays on the database");
+            snapshot = null;
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<Long, IntentExample> metadata = new HashMap<>();
+        try {
+            jdbcTemplate.query(EXAMPLES_QUERY, rs -> {
+                IntentExample example = new IntentExample(rs.getLong("id"), rs.getString("task_name"),
+                        rs.getString("title"), rs.getString("explanation"));
+                metadata.put(example.id(), example);
+            });
+        } catch (DataAccessException ex) {
+            log.warn("Unable to load intent examples", ex);
+            return;
+        }
+        IntentExamples examples = new IntentExamples(copy(embeddings.get()), metadata);
+        snapshot = new Snapshot(version.get().fingerprint(), examples);
+        log.info("Loaded {} intent examples in {} ms", examples.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Copies the (possibly memory-mapped) rows into a contiguous heap matrix; the table is small.
+     */
+    private static EmbeddingMatrix copy(EmbeddingMatrix embeddings) {
+        long[] ids = new long[embeddings.size()];
+        List<float[]> rows = new ArrayList<>(embeddings.size());
+        for (int ordinal = 0; ordinal < embeddings.size(); ordinal++) {
+            ids[ordinal] = embeddings.id(ordinal);
+            rows.add(embeddings.vector(ordinal));
+        }
+        return HeapEmbeddingMatrix.normalized(ids, rows, embeddings.dimensions());
+    }
+
+    private record Snapshot(long fingerprint, IntentExamples examples) {
+    }
+}
@@ -0,0 +1,55 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ch.so.agi.gretl.copilot.vector.EmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.ExactIndex;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
+
+/**
+ * Immutable set of intent examples: their embeddings as one {@link EmbeddingMatrix} and their metadata by id. The
+ * table is small, so the nearest examples are found by an exact scan.
+ */
+public final class IntentExamples {
+
+    private final ExactIndex index;
+    private final Map<Long, IntentExample> examples;
+    private final int dimensions;
+
+    public IntentExamples(EmbeddingMatrix embeddings, Map<Long, IntentExample> examples) {
+        this.index = new ExactIndex(embeddings);
+        this.examples = Map.copyOf(examples);
+        this.dimensions = embeddings.dimensions();
+    }
+
+    /**
+     * Returns the {@code k} examples most similar to the query, best first. Examples without metadata are skipped.
+     */
+    public List<Neighbour> nearest(float[] query, int k) {
+        List<VectorHit> hits = index.search(query, k);
+        List<Neighbour> neighbours = new ArrayList<>(hits.size());
+        for (VectorHit hit : hits) {
+            IntentExample example = examples.get(hit.id());
+            if (example != null) {
+                neighbours.add(new Neighbour(example, hit.score()));
+            }
+        }
+        return neighbours;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * An example and its cosine similarity to the query.
+     */
+    public record Neighbour(IntentExample example, double similarity) {
+    }
+}
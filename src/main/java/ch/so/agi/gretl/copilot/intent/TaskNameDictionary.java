@@ -0,0 +1,85 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * {@link TaskNameMatcher} over the distinct task names of {@code rag.task_examples} and {@code rag.task_properties},
+ * built in the background at startup and rebuilt when the corpus changes.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class TaskNameDictionary implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskNameDictionary.class);
+
+    private static final String TASK_NAMES_QUERY = """
+            SELECT task_name FROM rag.task_examples WHERE task_name IS NOT NULL
+            UNION
+            SELECT task_name FROM rag.task_properties WHERE task_name IS NOT NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Scheduler scheduler;
+    private volatile TaskNameMatcher current;
+
+    public TaskNameDictionary(JdbcTemplate jdbcTemplate,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.scheduler = scheduler;
+        Gauge.builder("gretl.copilot.intent.task.names", this,
+                dictionary -> dictionary.current == null ? 0 : dictionary.current.size()).register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuildAsync();
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void onCorpusChanged() {
+        rebuildAsync();
+    }
+
+    /**
+     * The matcher of the last build, empty until the first build finished.
+     */
+    public Optional<TaskNameMatcher> current() {
+        return Optional.ofNullable(current);
+    }
+
+    private void rebuildAsync() {
+        Mono.fromRunnable(this::rebuild).subscribeOn(scheduler).subscribe(null,
+                ex -> log.warn("Failed to build task name dictionary", ex));
+    }
+
+    private synchronized void rebuild() {
+        List<String> taskNames;
+        try {
+            taskNames = jdbcTemplate.queryForList(TASK_NAMES_QUERY, String.class);
+        } catch (DataAccessException ex) {
+            log.warn("Unable to read task names", ex);
+            return;
+        }
+        current = TaskNameMatcher.build(taskNames);
+        log.info("Built task name dictionary with {} names", current.size());
+    }
+}
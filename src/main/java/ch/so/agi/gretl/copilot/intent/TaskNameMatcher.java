@@ -0,0 +1,110 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton over the GRETL task names, finding every name mentioned in a text in one pass. Matching
+ * ignores case, and a match only counts as a whole word, so {@code Import} is not found inside {@code CsvImport}.
+ */
+public final class TaskNameMatcher {
+
+    private final Node root;
+    private final int size;
+
+    private TaskNameMatcher(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Builds the automaton; blank names are ignored and names differing only in case are matched as the first one.
+     */
+    public static TaskNameMatcher build(Collection<String> taskNames) {
+        Node root = new Node();
+        int size = 0;
+        for (String taskName : taskNames) {
+            if (taskName == null || taskName.isBlank()) {
+                continue;
+            }
+            String name = taskName.strip();
+            Node node = root;
+            for (int index = 0; index < name.length(); index++) {
+                node = node.children.computeIfAbsent(Character.toLowerCase(name.charAt(index)), key -> new Node());
+            }
+            if (node.taskName == null) {
+                node.taskName = name;
+                size++;
+            }
+        }
+
+        // Breadth first, so the failure link of a node's parent is final before the node's own.
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                Node child = entry.getValue();
+                Node failure = node.failure;
+                while (failure != root && !failure.children.containsKey(entry.getKey())) {
+                    failure = failure.failure;
+                }
+                child.failure = failure.children.getOrDefault(entry.getKey(), root);
+                child.output = child.failure.taskName != null ? child.failure : child.failure.output;
+                queue.add(child);
+            }
+        }
+        return new TaskNameMatcher(root, size);
+    }
+
+    /**
+     * The task names mentioned in {@code text} as whole words, in the order of their first mention.
+     */
+    public List<String> find(String text) {
+        if (text == null || text.isEmpty() || size == 0) {
+            return List.of();
+        }
+        Set<String> found = new LinkedHashSet<>();
+        Node node = root;
+        for (int index = 0; index < text.length(); index++) {
+            char c = Character.toLowerCase(text.charAt(index));
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.failure;
+            }
+            node = node.children.getOrDefault(c, root);
+            for (Node match = node.taskName != null ? node : node.output; match != null; match = match.output) {
+                int start = index - match.taskName.length() + 1;
+                if (isBoundary(text, start - 1) && isBoundary(text, index + 1)) {
+                    found.add(match.taskName);
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private Node failure;
+        /** The nearest node on the failure chain that ends a name. */
+        private Node output;
+        private String taskName;
+    }
+}
@@ -1,18 +1,16 @@
 package ch.so.agi.gretl.copilot.model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import ch.so.agi.gretl.copilot.prompt.CopilotPromptBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Flux;
 
 @Component
@@ -21,14 +19,16 @@ public class OpenAiCopilotModelClient implements CopilotModelClient {
 
     private static final Logger log = LoggerFactory.getLogger(OpenAiCopilotModelClient.class);
 
-    private static final Pattern GRADLE_CODE_BLOCK = Pattern.compile("```gradle\\s*(.*?)```", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-
     private final ChatModel chatModel;
     private final CopilotPromptBuilder promptBuilder;
+    private final Counter cancelledGenerations;
 
-    public OpenAiCopilotModelClient(ChatModel chatModel, CopilotPromptBuilder promptBuilder) {
+    public OpenAiCopilotModelClient(ChatModel chatModel, CopilotPromptBuilder promptBuilder,
+            MeterRegistry meterRegistry) {
         this.chatModel = chatModel;
         this.promptBuilder = promptBuilder;
+        this.cancelledGenerations = Counter.builder("gretl.copilot.cancelled.calls").tag("stage", "generation")
+                .register(meterRegistry);
     }
 
     @Override
@@ -40,57 +40,34 @@ public class OpenAiCopilotModelClient implements CopilotModelClient {
         }
         Prompt llmPrompt = promptBuilder.build(prompt);
 
-        String content;
-        try {
-            if (log.isDebugEnabled()) {
-                log.debug("Invoking ChatModel {} via call()", chatModel.getClass().getSimpleName());
-            }
-            content = chatModel.call(llmPrompt).getResult().getOutput().getText();
+        Flux<CopilotStreamSegment> segments = Flux.defer(() -> {
             if (log.isDebugEnabled()) {
-                String preview = content == null ? "" : content.substring(0, Math.min(content.length(), 200));
-                log.debug("ChatModel call completed; received {} characters. Preview: {}", content == null ? 0 : content.length(),
-                        preview);
+                log.debug("Invoking ChatModel {} via stream()", chatModel.getClass().getSimpleName());
             }
-        } catch (Exception ex) {
-            log.error("Chat model invocation failed", ex);
-            return Flux.error(ex);
-        }
+            StreamingSegmentParser parser = new StreamingSegmentParser();
+            return chatModel.stream(llmPrompt)
+                    .map(this::textOf)
+                    .concatMapIterable(parser::append)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(parser.finish())));
+        }).doOnError(ex -> log.error("Chat model invocation failed", ex))
+                .doOnCancel(() -> {
+                    // Cancelling the subscription aborts the underlying HTTP exchange.
+                    log.debug("Chat model stream cancelled by subscriber");
+                    cancelledGenerations.increment();
+                });
 
-        List<CopilotStreamSegment> segments = toSegments(content, prompt);
-        if (log.isDebugEnabled()) {
-            log.debug("streamResponse() produced {} segments", segments.size());
+        if (prompt.documents() != null && !prompt.documents().isEmpty()) {
+            segments = segments.concatWith(
+                    Flux.just(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.LINKS, "")));
         }
-        return Flux.fromIterable(segments);
+        return segments;
     }
 
-    private List<CopilotStreamSegment> toSegments(String rawContent, CopilotPrompt prompt) {
-        List<CopilotStreamSegment> segments = new ArrayList<>();
-
-        if (rawContent == null) {
-            return segments;
+    private String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
         }
-
-        String textContent = rawContent.trim();
-        String codeBlock = null;
-
-        Matcher matcher = GRADLE_CODE_BLOCK.matcher(textContent);
-        if (matcher.find()) {
-            codeBlock = matcher.group(1).strip();
-            textContent = matcher.replaceFirst("").trim();
-        }
-
-        if (!textContent.isEmpty()) {
-            segments.add(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.TEXT, textContent));
-        }
-
-        if (codeBlock != null && !codeBlock.isEmpty()) {
-            segments.add(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.CODE_BLOCK, codeBlock));
-        }
-
-        if (prompt.documents() != null && !prompt.documents().isEmpty()) {
-            segments.add(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.LINKS, ""));
-        }
-
-        return segments;
+        String text = response.getResult().getOutput().getText();
+        return text == null ? "" : text;
     }
-}
\ No newline at end of file
+}
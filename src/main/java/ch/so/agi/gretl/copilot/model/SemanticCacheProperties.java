@@ -0,0 +1,54 @@
+package ch.so.agi.gretl.copilot.model;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gretl.copilot.cache.semantic")
+public class SemanticCacheProperties {
+    private boolean enabled = true;
+    private double similarityThreshold = 0.95;
+    private boolean requireIntentMatch = true;
+    private int maxEntries = 500;
+    private Duration ttl = Duration.ofHours(12);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public void setSimilarityThreshold(double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    public boolean isRequireIntentMatch() {
+        return requireIntentMatch;
+    }
+
+    public void setRequireIntentMatch(boolean requireIntentMatch) {
+        this.requireIntentMatch = requireIntentMatch;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
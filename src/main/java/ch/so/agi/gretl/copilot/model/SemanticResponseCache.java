@@ -0,0 +1,149 @@
+package ch.so.agi.gretl.copilot.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import ch.so.agi.gretl.copilot.vector.VectorMath;
+
+/**
+ * Response cache in front of the {@link CopilotModelClient}. Answers are looked up by the cosine similarity of the
+ * query embedding (and optionally the intent label) instead of the exact question text, so near-identical questions
+ * are answered by replaying the segments of an earlier generation.
+ */
+@Component
+public class SemanticResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+    private final SemanticCacheProperties properties;
+    private final Cache<UUID, CachedAnswer> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer latencySaved;
+    private final Timer generation;
+
+    @Autowired
+    public SemanticResponseCache(SemanticCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    SemanticResponseCache(SemanticCacheProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .ticker(ticker)
+                .build();
+        this.hits = Counter.builder("gretl.copilot.cache.semantic.requests").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gretl.copilot.cache.semantic.requests").tag("result", "miss")
+                .register(meterRegistry);
+        this.latencySaved = Timer.builder("gretl.copilot.cache.semantic.latency.saved")
+                .description("Generation time of the cached answers that were replayed").register(meterRegistry);
+        this.generation = Timer.builder("gretl.copilot.model.generation")
+                .description("Duration of uncached model generations").register(meterRegistry);
+        Gauge.builder("gretl.copilot.cache.semantic.size", cache, Cache::estimatedSize).register(meterRegistry);
+        Gauge.builder("gretl.copilot.cache.semantic.hit.ratio", this, SemanticResponseCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replays a cached answer for a similar question or subscribes to the generator and caches its segments once the
+     * generation completed successfully.
+     */
+    public Flux<CopilotStreamSegment> stream(float[] queryEmbedding, CopilotPrompt prompt,
+            Supplier<Flux<CopilotStreamSegment>> generator) {
+        if (!properties.isEnabled() || queryEmbedding == null || queryEmbedding.length == 0) {
+            return generator.get();
+        }
+
+        String intentLabel = prompt.classification() != null ? prompt.classification().label() : null;
+        float[] normalized = VectorMath.normalize(queryEmbedding);
+        Optional<CachedAnswer> cached = findSimilar(normalized, intentLabel).map(cache::getIfPresent);
+        if (cached.isPresent()) {
+            hits.increment();
+            latencySaved.record(cached.get().generationTime());
+            return Flux.fromIterable(cached.get().segments());
+        }
+
+        misses.increment();
+        return Flux.defer(() -> {
+            List<CopilotStreamSegment> segments = new ArrayList<>();
+            long start = System.nanoTime();
+            return generator.get()
+                    .doOnNext(segments::add)
+                    .doOnComplete(() -> {
+                        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                        generation.record(elapsed);
+                        // Replace the answer of a similar question cached meanwhile instead of storing a duplicate.
+                        UUID key = findSimilar(normalized, intentLabel).orElseGet(UUID::randomUUID);
+                        cache.put(key, new CachedAnswer(normalized, intentLabel, List.copyOf(segments), elapsed));
+                    });
+        });
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * The key of the most similar cached answer at or above the threshold, comparing unit-length embeddings.
+     */
+    private Optional<UUID> findSimilar(float[] normalized, String intentLabel) {
+        UUID bestKey = null;
+        double bestSimilarity = properties.getSimilarityThreshold();
+        for (Map.Entry<UUID, CachedAnswer> entry : cache.asMap().entrySet()) {
+            CachedAnswer candidate = entry.getValue();
+            if (properties.isRequireIntentMatch() && !Objects.equals(intentLabel, candidate.intentLabel())) {
+                continue;
+            }
+            if (candidate.embedding().length != normalized.length) {
+                continue;
+            }
+            double similarity = VectorMath.dot(normalized, 0, candidate.embedding(), 0, normalized.length);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestKey = entry.getKey();
+            }
+        }
+        if (bestKey != null) {
+            log.debug("Semantic cache match with similarity {}", bestSimilarity);
+        }
+        // Callers read through the cache so the access counts towards the eviction policy.
+        return Optional.ofNullable(bestKey);
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    /** {@code embedding} has unit length. */
+    private record CachedAnswer(float[] embedding, String intentLabel, List<CopilotStreamSegment> segments,
+            Duration generationTime) {
+    }
+}
@@ -0,0 +1,114 @@
+package ch.so.agi.gretl.copilot.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incrementally splits streamed model output into {@link CopilotStreamSegment}s. Text outside of {@code ```gradle}
+ * fences is emitted as TEXT as soon as it arrives; the content of a fence is emitted as one CODE_BLOCK once the fence
+ * is closed. Fence markers may be split across chunk boundaries, so a trailing fragment that could be the start of
+ * a marker is held back until the next chunk decides it.
+ *
+ * <p>
+ * Instances keep per-stream state and are not thread-safe.
+ * </p>
+ */
+class StreamingSegmentParser {
+
+    private static final String OPENING_FENCE = "```gradle";
+    private static final String CLOSING_FENCE = "```";
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean insideCode;
+
+    List<CopilotStreamSegment> append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        pending.append(chunk);
+
+        List<CopilotStreamSegment> segments = new ArrayList<>();
+        while (true) {
+            if (insideCode) {
+                int end = indexOfIgnoreCase(pending, CLOSING_FENCE);
+                if (end < 0) {
+                    break;
+                }
+                addCode(segments, pending.substring(0, end));
+                pending.delete(0, end + CLOSING_FENCE.length());
+                insideCode = false;
+            } else {
+                int start = indexOfIgnoreCase(pending, OPENING_FENCE);
+                if (start < 0) {
+                    int keep = partialFenceLength(pending);
+                    addText(segments, pending.substring(0, pending.length() - keep));
+                    pending.delete(0, pending.length() - keep);
+                    break;
+                }
+                addText(segments, pending.substring(0, start));
+                pending.delete(0, start + OPENING_FENCE.length());
+                insideCode = true;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Flushes whatever is still buffered. An unterminated code fence is emitted as a code block.
+     */
+    List<CopilotStreamSegment> finish() {
+        List<CopilotStreamSegment> segments = new ArrayList<>();
+        if (insideCode) {
+            addCode(segments, pending.toString());
+        } else {
+            addText(segments, pending.toString());
+        }
+        pending.setLength(0);
+        insideCode = false;
+        return segments;
+    }
+
+    private void addText(List<CopilotStreamSegment> segments, String text) {
+        if (!text.isEmpty()) {
+            segments.add(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.TEXT, text));
+        }
+    }
+
+    private void addCode(List<CopilotStreamSegment> segments, String code) {
+        String stripped = code.strip();
+        if (!stripped.isEmpty()) {
+            segments.add(new CopilotStreamSegment(CopilotStreamSegment.SegmentType.CODE_BLOCK, stripped));
+        }
+    }
+
+    /**
+     * Length of the longest suffix of the buffer that is a proper prefix of the opening fence.
+     */
+    private static int partialFenceLength(CharSequence buffer) {
+        int max = Math.min(buffer.length(), OPENING_FENCE.length() - 1);
+        for (int length = max; length > 0; length--) {
+            if (regionMatchesIgnoreCase(buffer, buffer.length() - length, OPENING_FENCE, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private static int indexOfIgnoreCase(CharSequence buffer, String needle) {
+        for (int index = 0; index + needle.length() <= buffer.length(); index++) {
+            if (regionMatchesIgnoreCase(buffer, index, needle, needle.length())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence buffer, int offset, String needle, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(buffer.charAt(offset + i)) != needle.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
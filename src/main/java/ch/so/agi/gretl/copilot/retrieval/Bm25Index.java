@@ -0,0 +1,186 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Immutable inverted index over the heading and content of the chunks, scored with BM25F (heading matches count
+ * {@value #HEADING_BOOST} times). Terms come from {@link TextAnalyzer#analyze}; the postings of a term are parallel
+ * {@code int} arrays of document ordinals and per-field term frequencies, and the length normalisation is
+ * precomputed per document.
+ */
+public final class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float HEADING_BOOST = 2.0f;
+    private static final float CONTENT_BOOST = 1.0f;
+
+    private final long[] ids;
+    private final float[] headingNorms;
+    private final float[] contentNorms;
+    private final Map<String, Postings> postings;
+
+    private Bm25Index(long[] ids, float[] headingNorms, float[] contentNorms, Map<String, Postings> postings) {
+        this.ids = ids;
+        this.headingNorms = headingNorms;
+        this.contentNorms = contentNorms;
+        this.postings = postings;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns at most {@code k} chunks containing any of the query terms, best first.
+     */
+    public List<LexicalHit> search(String query, int k) {
+        return search(query, k, id -> true);
+    }
+
+    /**
+     * Like {@link #search(String, int)}, but only scores the chunks whose id is accepted by {@code filter}.
+     */
+    public List<LexicalHit> search(String query, int k, LongPredicate filter) {
+        if (k <= 0 || ids.length == 0) {
+            return List.of();
+        }
+        float[] scores = new float[ids.length];
+        int[] touched = new int[ids.length];
+        int touchedCount = 0;
+        for (String term : new LinkedHashSet<>(TextAnalyzer.analyze(query))) {
+            Postings termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+            for (int index = 0; index < termPostings.documents.length; index++) {
+                int document = termPostings.documents[index];
+                if (!filter.test(ids[document])) {
+                    continue;
+                }
+                float tf = HEADING_BOOST * termPostings.headingFrequencies[index] / headingNorms[document]
+                        + CONTENT_BOOST * termPostings.contentFrequencies[index] / contentNorms[document];
+                if (scores[document] == 0f) {
+                    touched[touchedCount++] = document;
+                }
+                scores[document] += termPostings.idf * tf / (K1 + tf);
+            }
+        }
+
+        // Scores are positive, so their float bits sort like the scores; the ordinal rides in the low half.
+        long[] ranked = new long[touchedCount];
+        for (int index = 0; index < touchedCount; index++) {
+            int document = touched[index];
+            ranked[index] = (long) Float.floatToIntBits(scores[document]) << 32 | document;
+        }
+        Arrays.sort(ranked);
+        int limit = Math.min(k, ranked.length);
+        List<LexicalHit> hits = new ArrayList<>(limit);
+        for (int index = ranked.length - 1; index >= ranked.length - limit; index--) {
+            int document = (int) ranked[index];
+            hits.add(new LexicalHit(ids[document], scores[document]));
+        }
+        return hits;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    private record Postings(int[] documents, int[] headingFrequencies, int[] contentFrequencies, float idf) {
+    }
+
+    /**
+     * Collects documents; not thread-safe.
+     */
+    public static final class Builder {
+
+        private long[] ids = new long[256];
+        private int[] headingLengths = new int[256];
+        private int[] contentLengths = new int[256];
+        private int size;
+        private final Map<String, PostingsBuilder> postings = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(long id, String heading, String content) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                headingLengths = Arrays.copyOf(headingLengths, size * 2);
+                contentLengths = Arrays.copyOf(contentLengths, size * 2);
+            }
+            List<String> headingTerms = TextAnalyzer.analyze(heading);
+            List<String> contentTerms = TextAnalyzer.analyze(content);
+            Map<String, int[]> frequencies = new HashMap<>();
+            headingTerms.forEach(term -> frequencies.computeIfAbsent(term, key -> new int[2])[0]++);
+            contentTerms.forEach(term -> frequencies.computeIfAbsent(term, key -> new int[2])[1]++);
+
+            int document = size++;
+            ids[document] = id;
+            headingLengths[document] = headingTerms.size();
+            contentLengths[document] = contentTerms.size();
+            frequencies.forEach((term, counts) -> postings.computeIfAbsent(term, key -> new PostingsBuilder())
+                    .add(document, counts[0], counts[1]));
+            return this;
+        }
+
+        public Bm25Index build() {
+            float averageHeading = Math.max(1f, average(headingLengths));
+            float averageContent = Math.max(1f, average(contentLengths));
+            float[] headingNorms = new float[size];
+            float[] contentNorms = new float[size];
+            for (int document = 0; document < size; document++) {
+                headingNorms[document] = 1f - B + B * headingLengths[document] / averageHeading;
+                contentNorms[document] = 1f - B + B * contentLengths[document] / averageContent;
+            }
+            Map<String, Postings> built = new HashMap<>(postings.size() * 2);
+            postings.forEach((term, builder) -> built.put(term, builder.build(size)));
+            return new Bm25Index(Arrays.copyOf(ids, size), headingNorms, contentNorms, built);
+        }
+
+        private float average(int[] lengths) {
+            long total = 0;
+            for (int document = 0; document < size; document++) {
+                total += lengths[document];
+            }
+            return size == 0 ? 0f : (float) total / size;
+        }
+    }
+
+    private static final class PostingsBuilder {
+
+        private int[] documents = new int[4];
+        private int[] headingFrequencies = new int[4];
+        private int[] contentFrequencies = new int[4];
+        private int size;
+
+        void add(int document, int headingFrequency, int contentFrequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                headingFrequencies = Arrays.copyOf(headingFrequencies, size * 2);
+                contentFrequencies = Arrays.copyOf(contentFrequencies, size * 2);
+            }
+            documents[size] = document;
+            headingFrequencies[size] = headingFrequency;
+            contentFrequencies[size] = contentFrequency;
+            size++;
+        }
+
+        Postings build(int documentCount) {
+            float idf = (float) Math.log(1.0 + (documentCount - size + 0.5) / (size + 0.5));
+            return new Postings(Arrays.copyOf(documents, size), Arrays.copyOf(headingFrequencies, size),
+                    Arrays.copyOf(contentFrequencies, size), idf);
+        }
+    }
+}
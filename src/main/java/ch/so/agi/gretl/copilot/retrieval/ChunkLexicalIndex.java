@@ -0,0 +1,125 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.LexicalSearch;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * In-process {@link Bm25Index} over heading and content of the chunks in the {@link ChunkStore}, used for the lexical half of the
+ * hybrid query when {@code gretl.copilot.retrieval.lexical-search=memory}. The index is built in the background at
+ * startup and rebuilt when the corpus changes; until the first build finished {@link #search} returns empty and the
+ * caller falls back to the database.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class ChunkLexicalIndex implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkLexicalIndex.class);
+
+    private final ChunkStore chunkStore;
+    private final RetrievalProperties properties;
+    private final Scheduler scheduler;
+    private final Timer searchTimer;
+    private final Timer buildTimer;
+    private volatile Bm25Index current;
+
+    public ChunkLexicalIndex(ChunkStore chunkStore, RetrievalProperties properties,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.chunkStore = chunkStore;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.searchTimer = Timer.builder("gretl.copilot.lexical.search").register(meterRegistry);
+        this.buildTimer = Timer.builder("gretl.copilot.lexical.build").register(meterRegistry);
+        Gauge.builder("gretl.copilot.lexical.size", this, index -> index.current == null ? 0 : index.current.size())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (isEnabled()) {
+            rebuildAsync();
+        }
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void onCorpusChanged() {
+        if (isEnabled()) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Returns the {@code k} chunks with the best BM25F score for the query, or empty if the index is not (yet)
+     * available.
+     */
+    public Optional<List<LexicalHit>> search(String query, int k) {
+        Bm25Index index = current;
+        if (index == null || index.size() == 0) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        List<LexicalHit> hits = index.search(query, k);
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(hits);
+    }
+
+    /**
+     * Like {@link #search(String, int)}, but only scores the chunks in {@code scope}.
+     */
+    public Optional<List<LexicalHit>> search(String query, int k, TaskScope scope) {
+        Bm25Index index = current;
+        if (index == null || index.size() == 0) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        List<LexicalHit> hits = index.search(query, k, scope::contains);
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(hits);
+    }
+
+    private boolean isEnabled() {
+        return properties.getLexicalSearch() == LexicalSearch.MEMORY;
+    }
+
+    private void rebuildAsync() {
+        Mono.fromRunnable(this::rebuild).subscribeOn(scheduler).subscribe(null,
+                ex -> log.error("Failed to build chunk lexical index", ex));
+    }
+
+    private synchronized void rebuild() {
+        Optional<Collection<StoredChunk>> chunks = chunkStore.all();
+        if (chunks.isEmpty()) {
+            log.info("No chunks available, lexical search stays on the database");
+            current = null;
+            return;
+        }
+        long start = System.nanoTime();
+        Bm25Index.Builder builder = Bm25Index.builder();
+        chunks.get().forEach(chunk -> builder.add(chunk.id(), chunk.heading(), chunk.contentText()));
+        Bm25Index index = builder.build();
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        current = index;
+        log.info("Built lexical index over {} chunks with {} terms in {} ms", index.size(), index.termCount(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+}
@@ -0,0 +1,199 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.concurrent.CancellableJdbc;
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersion;
+import ch.so.agi.gretl.copilot.corpus.CorpusVersionMonitor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Text and metadata of all {@code rag.doc_chunks} rows on the heap, keyed by id, so retrieval can score by id and
+ * hydrate only the chunks that survive. Loaded in the background at startup and reloaded when the corpus changes;
+ * ids that are not (yet) in memory are read from the database.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class ChunkStore implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkStore.class);
+
+    private static final String ALL_CHUNKS_QUERY = """
+            SELECT id, task_name, heading, url, content_text
+            FROM rag.doc_chunks
+            ORDER BY id
+            """;
+
+    private static final String CHUNKS_BY_ID_QUERY = """
+            SELECT id, task_name, heading, url, content_text
+            FROM rag.doc_chunks
+            WHERE id = ANY(?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CorpusVersionMonitor corpusVersionMonitor;
+    private final Scheduler scheduler;
+    private final Counter misses;
+    private volatile Snapshot snapshot;
+
+    public ChunkStore(JdbcTemplate jdbcTemplate, CorpusVersionMonitor corpusVersionMonitor,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.corpusVersionMonitor = corpusVersionMonitor;
+        this.scheduler = scheduler;
+        this.misses = Counter.builder("gretl.copilot.chunks.misses")
+                .description("Chunks hydrated from the database because they were not in memory")
+                .register(meterRegistry);
+        Gauge.builder("gretl.copilot.chunks.size", this, store -> store.snapshot == null ? 0 : store.snapshot.size())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        reloadAsync();
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void onCorpusChanged() {
+        reloadAsync();
+    }
+
+    /**
+     * All chunks of the current corpus version, loading them if necessary. Empty if they cannot be read.
+     */
+    public Optional<Collection<StoredChunk>> all() {
+        return load().map(loaded -> loaded.chunks().values());
+    }
+
+    /**
+     * The chunks with the given ids that exist. Chunks missing in memory are read from the database; a failing read
+     * throws the {@link DataAccessException} of the {@link JdbcTemplate}.
+     */
+    public Map<Long, StoredChunk> get(List<Long> ids) {
+        Snapshot current = snapshot;
+        Map<Long, StoredChunk> found = new HashMap<>(ids.size() * 2);
+        List<Long> missing = ids;
+        if (current != null) {
+            for (Long id : ids) {
+                StoredChunk chunk = current.chunks().get(id);
+                if (chunk != null) {
+                    found.put(id, chunk);
+                }
+            }
+            missing = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        }
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            Long[] missingIds = missing.toArray(Long[]::new);
+            CancellableJdbc.query(jdbcTemplate, CHUNKS_BY_ID_QUERY,
+                    statement -> statement.setArray(1, statement.getConnection().createArrayOf("bigint", missingIds)),
+                    (rs, rowNum) -> mapChunk(rs)).forEach(chunk -> found.put(chunk.id(), chunk));
+        }
+        return found;
+    }
+
+    /**
+     * The chunks of the tasks with the given lower-case names, as used in the {@code task.<name>} intent labels.
+     * Empty if the chunks are not loaded yet or none of the tasks has chunks.
+     */
+    public Optional<TaskScope> scope(Collection<String> taskKeys) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        Set<String> taskNames = new LinkedHashSet<>();
+        List<Long> ids = new ArrayList<>();
+        for (String taskKey : taskKeys) {
+            for (StoredChunk chunk : current.chunksByTask().getOrDefault(taskKey, List.of())) {
+                taskNames.add(chunk.taskName());
+                ids.add(chunk.id());
+            }
+        }
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new TaskScope(List.copyOf(taskNames), ids.stream().mapToLong(Long::longValue).toArray()));
+    }
+
+    /**
+     * The key of a task name in {@link #scope}.
+     */
+    static String taskKey(String taskName) {
+        return taskName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void reloadAsync() {
+        Mono.fromRunnable(this::load).subscribeOn(scheduler).subscribe(null,
+                ex -> log.warn("Failed to load chunks", ex));
+    }
+
+    private synchronized Optional<Snapshot> load() {
+        Optional<CorpusVersion> version = corpusVersionMonitor.current().or(corpusVersionMonitor::check);
+        Snapshot current = snapshot;
+        if (current != null && (version.isEmpty() || current.fingerprint() == version.get().fingerprint())) {
+            return Optional.of(current);
+        }
+        if (version.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long start = System.currentTimeMillis();
+        Map<Long, StoredChunk> chunks = new HashMap<>();
+        try {
+            jdbcTemplate.query(ALL_CHUNKS_QUERY, rs -> {
+                StoredChunk chunk = mapChunk(rs);
+                chunks.put(chunk.id(), chunk);
+            });
+        } catch (DataAccessException ex) {
+            log.warn("Unable to load chunks", ex);
+            return Optional.ofNullable(current);
+        }
+        Map<String, List<StoredChunk>> chunksByTask = new HashMap<>();
+        chunks.values().stream().filter(chunk -> chunk.taskName() != null && !chunk.taskName().isBlank())
+                .forEach(chunk -> chunksByTask.computeIfAbsent(taskKey(chunk.taskName()), key -> new ArrayList<>())
+                        .add(chunk));
+        Snapshot loaded = new Snapshot(version.get().fingerprint(), Map.copyOf(chunks), Map.copyOf(chunksByTask));
+        snapshot = loaded;
+        log.info("Loaded {} chunks in {} ms", loaded.size(), System.currentTimeMillis() - start);
+        return Optional.of(loaded);
+    }
+
+    private static StoredChunk mapChunk(ResultSet rs) throws SQLException {
+        return new StoredChunk(rs.getLong("id"), rs.getString("task_name"), rs.getString("heading"),
+                rs.getString("url"), rs.getString("content_text"));
+    }
+
+    private record Snapshot(long fingerprint, Map<Long, StoredChunk> chunks,
+            Map<String, List<StoredChunk>> chunksByTask) {
+        int size() {
+            return chunks.size();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+import ch.so.agi.gretl.copilot.embedding.EmbeddingStore;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.VectorSearch;
+import ch.so.agi.gretl.copilot.vector.EmbeddingMatrix;
+import ch.so.agi.gretl.copilot.vector.ExactIndex;
+import ch.so.agi.gretl.copilot.vector.HnswIndex;
+import ch.so.agi.gretl.copilot.vector.PrefixIndex;
+import ch.so.agi.gretl.copilot.vector.Quantization;
+import ch.so.agi.gretl.copilot.vector.QuantizedIndex;
+import ch.so.agi.gretl.copilot.vector.RecallEvaluator;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
+import ch.so.agi.gretl.copilot.vector.VectorIndex;
+import ch.so.agi.gretl.copilot.vector.VectorIndexProperties;
+import ch.so.agi.gretl.copilot.vector.VectorMath;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * In-process vector search over the {@code rag.doc_chunks} embeddings of the {@link EmbeddingStore}, either through
+ * an HNSW graph or a scan depending on {@code gretl.copilot.retrieval.vector-search}. With
+ * {@code gretl.copilot.vector.quantization} the scan runs over int8 or binary codes and rescores the shortlist. With
+ * {@code gretl.copilot.retrieval.prefix-dimensions} either runs over the truncated embeddings and the shortlist is
+ * rescored with the full ones, see {@link PrefixIndex}. The index is built in the background at startup and rebuilt
+ * when the corpus changes; until the first build finished {@link #search} returns empty and the caller falls back to
+ * the database.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class ChunkVectorIndex implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkVectorIndex.class);
+
+    private static final long RECALL_SEED = 42L;
+
+    private final EmbeddingStore embeddingStore;
+    private final RetrievalProperties retrievalProperties;
+    private final VectorIndexProperties properties;
+    private final Scheduler scheduler;
+    private final Timer searchTimer;
+    private final Timer buildTimer;
+    private volatile LoadedIndex current;
+    private volatile double recall = Double.NaN;
+
+    public ChunkVectorIndex(EmbeddingStore embeddingStore, RetrievalProperties retrievalProperties,
+            VectorIndexProperties properties,
+            @Qualifier(SchedulerConfiguration.BLOCKING_SCHEDULER) Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.embeddingStore = embeddingStore;
+        this.retrievalProperties = retrievalProperties;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        String mode = retrievalProperties.getVectorSearch() == VectorSearch.EXACT
+                && properties.getQuantization() != Quantization.NONE
+                        ? properties.getQuantization().name().toLowerCase(Locale.ROOT)
+                        : retrievalProperties.getVectorSearch().name().toLowerCase(Locale.ROOT);
+        if (retrievalProperties.getPrefixDimensions() > 0) {
+            mode += "-prefix" + retrievalProperties.getPrefixDimensions();
+        }
+        this.searchTimer = Timer.builder("gretl.copilot.vector.search").tag("index", mode).register(meterRegistry);
+        this.buildTimer = Timer.builder("gretl.copilot.vector.build").tag("index", mode).register(meterRegistry);
+        Gauge.builder("gretl.copilot.vector.size", this, index -> index.current == null ? 0 : index.current.size())
+                .register(meterRegistry);
+        Gauge.builder("gretl.copilot.vector.recall", this, index -> index.recall)
+                .tag("k", Integer.toString(properties.getRecallK()))
+                .description("Recall@k of the vector index against exact search, measured after each build")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (isEnabled()) {
+            rebuildAsync();
+        }
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void onCorpusChanged() {
+        if (isEnabled()) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Returns the {@code k} chunks most similar to the query, or empty if the index is not (yet) available.
+     */
+    public Optional<List<VectorHit>> search(float[] query, int k) {
+        LoadedIndex loaded = current;
+        if (loaded == null || loaded.size() == 0) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        List<VectorHit> hits = loaded.primary().search(query, k);
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(hits);
+    }
+
+    /**
+     * Returns the {@code k} chunks of {@code scope} most similar to the query, or empty if the index is not (yet)
+     * available. A scope is a small fraction of the corpus, so its rows are scanned exactly, whatever the index.
+     */
+    public Optional<List<VectorHit>> search(float[] query, int k, TaskScope scope) {
+        LoadedIndex loaded = current;
+        if (loaded == null || loaded.size() == 0) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        int[] ordinals = LongStream.of(scope.ids()).mapToObj(loaded.ordinals()::get).filter(Objects::nonNull)
+                .mapToInt(Integer::intValue).toArray();
+        List<VectorHit> hits = loaded.exact().search(query, k, ordinals);
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(hits);
+    }
+
+    /**
+     * Recall@k of the current index against exact search for {@code sampleSize} stored chunks used as queries,
+     * with {@code efSearch} applied to an HNSW index. Used for tuning; {@code NaN} if there is no index.
+     */
+    public double measureRecall(int sampleSize, int k, int efSearch) {
+        LoadedIndex loaded = current;
+        if (loaded == null) {
+            return Double.NaN;
+        }
+        if (!(loaded.primary() instanceof HnswIndex hnsw)) {
+            return RecallEvaluator.recallAtK(loaded.primary(), loaded.exact(), loaded.vectors(), sampleSize, k,
+                    RECALL_SEED);
+        }
+        VectorIndex tuned = new VectorIndex() {
+            @Override
+            public List<VectorHit> search(float[] query, int limit) {
+                return hnsw.search(query, limit, efSearch);
+            }
+
+            @Override
+            public int size() {
+                return hnsw.size();
+            }
+        };
+        return RecallEvaluator.recallAtK(tuned, loaded.exact(), loaded.vectors(), sampleSize, k, RECALL_SEED);
+    }
+
+    public double getRecall() {
+        return recall;
+    }
+
+    private boolean isEnabled() {
+        return retrievalProperties.getVectorSearch() != VectorSearch.DATABASE;
+    }
+
+    private void rebuildAsync() {
+        Mono.fromRunnable(this::rebuild).subscribeOn(scheduler).subscribe(null,
+                ex -> log.error("Failed to build chunk vector index", ex));
+    }
+
+    private synchronized void rebuild() {
+        Optional<EmbeddingMatrix> chunks = embeddingStore.chunks();
+        if (chunks.isEmpty()) {
+            log.info("No chunk embeddings available, vector search stays on the database");
+            current = null;
+            return;
+        }
+
+        EmbeddingMatrix vectors = chunks.get();
+        ExactIndex exact = new ExactIndex(vectors);
+        boolean quantized = properties.getQuantization() != Quantization.NONE;
+        int prefixDimensions = retrievalProperties.getPrefixDimensions();
+        boolean prefixed = prefixDimensions > 0 && prefixDimensions < vectors.dimensions();
+        if (prefixDimensions > 0 && !prefixed) {
+            log.warn("Prefix of {} dimensions is not shorter than the {} stored dimensions, searching full vectors",
+                    prefixDimensions, vectors.dimensions());
+        }
+        if (retrievalProperties.getVectorSearch() == VectorSearch.EXACT && !quantized && !prefixed) {
+            current = new LoadedIndex(vectors, exact, exact, ordinals(vectors));
+            recall = 1.0;
+            log.info("Serving exact vector search over {} chunks (SIMD: {})", vectors.size(), VectorMath.isSimd());
+            return;
+        }
+
+        long start = System.nanoTime();
+        VectorIndex primary = prefixed
+                ? PrefixIndex.build(vectors, prefixDimensions, retrievalProperties.getPrefixRescoreMultiplier(),
+                        this::buildStage)
+                : buildStage(vectors);
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        current = new LoadedIndex(vectors, primary, exact, ordinals(vectors));
+        recall = RecallEvaluator.recallAtK(primary, exact, vectors, properties.getRecallSampleSize(),
+                properties.getRecallK(), RECALL_SEED);
+        log.info("Built {} index over {} chunks in {} ms, recall@{} {}", describe(primary), vectors.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), properties.getRecallK(), String.format("%.3f", recall));
+    }
+
+    private static Map<Long, Integer> ordinals(EmbeddingMatrix vectors) {
+        Map<Long, Integer> ordinals = new HashMap<>(vectors.size() * 2);
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            ordinals.put(vectors.id(ordinal), ordinal);
+        }
+        return ordinals;
+    }
+
+    private VectorIndex buildStage(EmbeddingMatrix vectors) {
+        if (retrievalProperties.getVectorSearch() == VectorSearch.HNSW) {
+            return HnswIndex.build(vectors, properties.getM(), properties.getEfConstruction(), properties.getEfSearch(),
+                    RECALL_SEED);
+        }
+        if (properties.getQuantization() != Quantization.NONE) {
+            return QuantizedIndex.build(vectors, properties.getQuantization(), properties.getRescoreMultiplier());
+        }
+        return new ExactIndex(vectors);
+    }
+
+    private String describe(VectorIndex index) {
+        if (index instanceof PrefixIndex prefixIndex) {
+            return describe(prefixIndex.firstStage()) + " over " + prefixIndex.prefixDimensions() + "-dimension prefixes ("
+                    + prefixIndex.prefixBytes() / 1024 + " KiB)";
+        }
+        if (index instanceof QuantizedIndex quantizedIndex) {
+            return properties.getQuantization() + " quantized (" + quantizedIndex.codeBytes() / 1024 + " KiB codes)";
+        }
+        return index instanceof HnswIndex ? "HNSW" : "exact";
+    }
+
+    private record LoadedIndex(EmbeddingMatrix vectors, VectorIndex primary, ExactIndex exact,
+            Map<Long, Integer> ordinals) {
+        int size() {
+            return vectors.size();
+        }
+    }
+}
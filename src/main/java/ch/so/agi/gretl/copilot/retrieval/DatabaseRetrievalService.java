@@ -1,33 +1,37 @@
 package ch.so.agi.gretl.copilot.retrieval;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.messages.SystemMessage;
-import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.model.ChatModel;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import com.pgvector.PGvector;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import ch.so.agi.gretl.copilot.concurrent.CancellableJdbc;
+import ch.so.agi.gretl.copilot.concurrent.CancellationScope;
+import ch.so.agi.gretl.copilot.embedding.QueryEmbeddingService;
 import ch.so.agi.gretl.copilot.intent.IntentClassification;
+import ch.so.agi.gretl.copilot.intent.IntentLabel;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.Fusion;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.LexicalSearch;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.VectorSearch;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
 
 @Component
 @ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
@@ -37,37 +41,122 @@ public class DatabaseRetrievalService implements RetrievalService {
 
     private static final int EMBEDDING_DIMENSIONS = 3072;
 
-    private static final Pattern SCORE_PATTERN = Pattern.compile("(-?\\d+(?:\\.\\d+)?)");
+    private static final String TASK_LABEL_PREFIX = "task.";
 
-    private static final String HYBRID_QUERY = """
-            WITH params AS (
+    /**
+     * Vector half computed by pgvector, ordered by the expression of the {@code halfvec} HNSW index of migration V3.
+     */
+    static final String DATABASE_VEC = """
               SELECT
-                ?::vector(3072)      AS q_emb,
-                ?::text              AS q_text,
-                COALESCE(?::float8, 0.6)::float8 AS alpha,
-                ?::int               AS candidate_limit
-            ),
-            vec AS (
+                dc.id,
+                1.0 - (dc.embedding::halfvec(3072) <=> (SELECT q_emb FROM params)::halfvec(3072)) AS v_score
+              FROM doc_chunks dc
+              ORDER BY dc.embedding::halfvec(3072) <=> (SELECT q_emb FROM params)::halfvec(3072)
+              LIMIT (SELECT candidate_limit FROM params)
+            """;
+
+    /** Checks information_schema for the full text column of migration V2. */
+    private static final String CONTENT_TSV_QUERY = """
+            SELECT EXISTS (
+              SELECT 1 FROM information_schema.columns
+              WHERE table_schema = 'rag' AND table_name = 'doc_chunks' AND column_name = 'content_tsv'
+            )
+            """;
+
+    /** Checks pg_indexes for the HNSW index on the embedding prefix. */
+    private static final String PREFIX_INDEX_QUERY = """
+            SELECT EXISTS (
+              SELECT 1 FROM pg_indexes
+              WHERE tablename = 'doc_chunks' AND indexdef LIKE '%hnsw%' AND indexdef LIKE ?
+            )
+            """;
+
+    /**
+     * Vector half computed by pgvector in two stages: a shortlist by the cosine distance of the leading {@code %1$d}
+     * dimensions, served by an expression index on the same prefix, rescored with the full embedding. The cosine
+     * distance is scale invariant, so the prefixes need no re-normalisation.
+     */
+    static final String DATABASE_PREFIX_VEC = """
+              SELECT
+                s.id,
+                1.0 - (dc.embedding <=> (SELECT q_emb FROM params)) AS v_score
+              FROM (
+                SELECT p.id
+                FROM doc_chunks p
+                ORDER BY subvector(p.embedding, 1, %1$d)::vector(%1$d)
+                         <=> subvector((SELECT q_emb FROM params), 1, %1$d)::vector(%1$d)
+                LIMIT (SELECT candidate_limit FROM params) * %2$d
+              ) s
+              JOIN doc_chunks dc ON dc.id = s.id
+              ORDER BY v_score DESC
+              LIMIT (SELECT candidate_limit FROM params)
+            """;
+
+    /**
+     * Vector half computed by pgvector over the chunks of the scoped tasks, found through
+     * {@code idx_doc_chunks_task_section}. They are a fraction of the corpus, so their distances are computed exactly.
+     */
+    static final String SCOPED_DATABASE_VEC = """
               SELECT
                 dc.id,
                 1.0 - (dc.embedding <=> (SELECT q_emb FROM params)) AS v_score
               FROM doc_chunks dc
+              WHERE dc.task_name = ANY((SELECT q_tasks FROM params))
               ORDER BY dc.embedding <=> (SELECT q_emb FROM params)
               LIMIT (SELECT candidate_limit FROM params)
-            ),
-            bm AS (
+            """;
+
+    /** Vector half handed in as (id, score) arrays by the in-process index. */
+    private static final String PROVIDED_VEC = """
+              SELECT v.id, v.v_score
+              FROM unnest(?::bigint[], ?::float8[]) AS v(id, v_score)
+            """;
+
+    /**
+     * Lexical half computed by Postgres full text search over the stored, GIN-indexed {@code content_tsv} of
+     * migration V2.
+     */
+    static final String DATABASE_BM = """
+              SELECT
+                dc.id,
+                ts_rank_cd(dc.content_tsv, (SELECT q_query FROM params)) AS b_score
+              FROM doc_chunks dc
+              WHERE dc.content_tsv @@ (SELECT q_query FROM params)
+              ORDER BY b_score DESC
+              LIMIT (SELECT candidate_limit FROM params)
+            """;
+
+    /** Lexical half computed by Postgres full text search over the chunks of the scoped tasks. */
+    static final String SCOPED_DATABASE_BM = """
               SELECT
                 dc.id,
-                ts_rank_cd(
-                  to_tsvector('simple', dc.content_text),
-                  plainto_tsquery('simple', (SELECT q_text FROM params))
-                ) AS b_score
+                ts_rank_cd(dc.content_tsv, (SELECT q_query FROM params)) AS b_score
               FROM doc_chunks dc
-              WHERE to_tsvector('simple', dc.content_text)
-                    @@ plainto_tsquery('simple', (SELECT q_text FROM params))
+              WHERE dc.content_tsv @@ (SELECT q_query FROM params)
+                AND dc.task_name = ANY((SELECT q_tasks FROM params))
               ORDER BY b_score DESC
               LIMIT (SELECT candidate_limit FROM params)
+            """;
+
+    /** Lexical half handed in as (id, score) arrays by the in-process index. */
+    private static final String PROVIDED_BM = """
+              SELECT b.id, b.b_score
+              FROM unnest(?::bigint[], ?::float8[]) AS b(id, b_score)
+            """;
+
+    static final String HYBRID_QUERY_TEMPLATE = """
+            WITH params AS (
+              SELECT
+                ?::vector(3072)      AS q_emb,
+                plainto_tsquery('simple', ?::text) AS q_query,
+                COALESCE(?::float8, 0.6)::float8 AS alpha,
+                ?::int               AS candidate_limit,
+                ?::text[]            AS q_tasks
             ),
+            vec AS (
+            %s),
+            bm AS (
+            %s),
             cand AS (
               SELECT id FROM vec
               UNION
@@ -106,153 +195,283 @@ public class DatabaseRetrievalService implements RetrievalService {
               FROM normed n
             )
             SELECT
-              dc.id,
-              dc.task_name,
-              dc.heading,
-              dc.url,
-              dc.content_text,
+              r.id,
               r.v_norm   AS vector_norm,
               r.b_norm   AS bm25_norm,
               r.hybrid_score
             FROM ranked r
-            JOIN doc_chunks dc ON dc.id = r.id
             ORDER BY r.hybrid_score DESC
             LIMIT (SELECT candidate_limit FROM params)
             """;
 
-    private final JdbcClient jdbcClient;
-    private final EmbeddingModel embeddingModel;
-    private final ObjectProvider<ChatModel> rerankerProvider;
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryEmbeddingService queryEmbeddingService;
+    private final ChunkVectorIndex chunkVectorIndex;
+    private final ChunkLexicalIndex chunkLexicalIndex;
+    private final FusionSearch fusionSearch;
+    private final ChunkStore chunkStore;
+    private final Reranker reranker;
     private final RetrievalProperties properties;
-
-    public DatabaseRetrievalService(JdbcClient jdbcClient, EmbeddingModel embeddingModel,
-            ObjectProvider<ChatModel> rerankerProvider, RetrievalProperties properties) {
-        this.jdbcClient = jdbcClient;
-        this.embeddingModel = embeddingModel;
-        this.rerankerProvider = rerankerProvider;
+    private final Counter cancelledQueries;
+    private final Counter scopedQueries;
+    private final Counter scopeFallbacks;
+    private final String databaseVec;
+
+    public DatabaseRetrievalService(JdbcTemplate jdbcTemplate, QueryEmbeddingService queryEmbeddingService,
+            ChunkVectorIndex chunkVectorIndex, ChunkLexicalIndex chunkLexicalIndex, FusionSearch fusionSearch,
+            ChunkStore chunkStore, Reranker reranker, RetrievalProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queryEmbeddingService = queryEmbeddingService;
+        this.chunkVectorIndex = chunkVectorIndex;
+        this.chunkLexicalIndex = chunkLexicalIndex;
+        this.fusionSearch = fusionSearch;
+        this.chunkStore = chunkStore;
+        this.reranker = reranker;
         this.properties = properties;
+        this.cancelledQueries = Counter.builder("gretl.copilot.cancelled.calls").tag("stage", "retrieval-query")
+                .register(meterRegistry);
+        this.scopedQueries = Counter.builder("gretl.copilot.retrieval.scope").tag("outcome", "scoped")
+                .description("Queries answered from the chunks of the classified tasks").register(meterRegistry);
+        this.scopeFallbacks = Counter.builder("gretl.copilot.retrieval.scope").tag("outcome", "fallback")
+                .description("Scoped queries repeated over the whole corpus for lack of hits").register(meterRegistry);
+        verifySchema(jdbcTemplate);
+        this.databaseVec = databaseVec(properties, jdbcTemplate);
+    }
+
+    @Override
+    public boolean usesClassification() {
+        return properties.isIntentScope();
     }
 
     @Override
     public RetrievalResult retrieve(String userMessage, IntentClassification classification) {
+        return retrieve(userMessage, queryEmbeddingService.embed(userMessage), classification);
+    }
+
+    @Override
+    public RetrievalResult retrieve(String userMessage, float[] queryEmbedding, IntentClassification classification) {
         log.debug("Fetch documents from database");
-        float[] queryVector = embedQuery(userMessage);
-        
-        System.out.println("****** 1.5");
-        System.out.println(queryVector.length);
-        
-        List<DatabaseDocument> candidates = fetchCandidates(queryVector, userMessage, properties.getAlpha(),
-                properties.getCandidateLimit());
-        log.debug("Candidates total: {}", candidates.size());
-        
+        float[] queryVector = toQueryVector(queryEmbedding);
+
+        List<FusedHit> hits = score(queryVector, userMessage, classification);
+        log.debug("Candidates total: {}", hits.size());
+
+        // Only the candidates the reranker reads, or the final ones if it keeps the hybrid order, need their text.
+        int survivors = reranker.readsContent() ? properties.getRerankTopK() : properties.getFinalLimit();
+        List<RetrievalCandidate> candidates = hydrate(hits.stream().limit(survivors).toList());
         if (candidates.isEmpty()) {
             log.warn("No retrieval candidates for query: {}", userMessage);
             return new RetrievalResult(List.of());
         }
 
-        List<RerankedDocument> reranked = rerankCandidates(userMessage, candidates, properties.getRerankTopK());
+        List<RerankedCandidate> reranked = reranker.rerank(userMessage, classification, candidates);
         log.debug("Reranked documents (total): {}", reranked.size());
 
         return new RetrievalResult(reranked.stream().limit(properties.getFinalLimit()).map(this::toRetrievedDocument).toList());
     }
 
-    private float[] embedQuery(String userMessage) {
-        try {
-            Document document = new Document(userMessage);
-            System.out.println("*****" + embeddingModel.toString());
-            System.out.println("*****" + embeddingModel.dimensions());
-            return embeddingModel.embed(document);
-        } catch (Exception ex) {
-            log.warn("Failed to generate embedding, falling back to zero vector", ex);
+    private float[] toQueryVector(float[] queryEmbedding) {
+        if (queryEmbedding == null || queryEmbedding.length == 0) {
+            log.warn("No query embedding available, falling back to zero vector");
             return new float[EMBEDDING_DIMENSIONS];
         }
+        return queryEmbedding;
+    }
+
+    /**
+     * Scoring phase: ids with their branch and hybrid scores, best first, without any chunk text. Scoped to the
+     * classified tasks if configured and confident enough, falling back to the whole corpus.
+     */
+    private List<FusedHit> score(float[] queryVector, String queryText, IntentClassification classification) {
+        Optional<TaskScope> scope = taskScope(classification);
+        if (scope.isPresent()) {
+            List<FusedHit> hits = scoreWithin(queryVector, queryText, scope.get());
+            if (CancellationScope.current().isCancelled()) {
+                return hits;
+            }
+            if (hits.size() >= properties.getFinalLimit()) {
+                log.debug("Scoped retrieval to {}", scope.get());
+                scopedQueries.increment();
+                return hits;
+            }
+            log.debug("Scoped retrieval to {} found {} chunks, searching all", scope.get(), hits.size());
+            scopeFallbacks.increment();
+        }
+        return scoreWithin(queryVector, queryText, null);
+    }
+
+    /**
+     * The chunks of the tasks of the intent labels, if intent scoping is enabled and the classification is
+     * confident enough.
+     */
+    private Optional<TaskScope> taskScope(IntentClassification classification) {
+        if (!properties.isIntentScope() || classification == null
+                || classification.confidence() < properties.getIntentScopeMinConfidence()) {
+            return Optional.empty();
+        }
+        List<String> taskKeys = classification.allLabels().stream().map(IntentLabel::label)
+                .filter(label -> label != null && label.startsWith(TASK_LABEL_PREFIX))
+                .map(label -> label.substring(TASK_LABEL_PREFIX.length())).distinct().toList();
+        return taskKeys.isEmpty() ? Optional.empty() : chunkStore.scope(taskKeys);
     }
 
-    private List<DatabaseDocument> fetchCandidates(float[] queryVector, String queryText, double alpha, int limit) {
+    /**
+     * Hybrid scores over the chunks of {@code scope}, or over all chunks if it is {@code null}.
+     */
+    private List<FusedHit> scoreWithin(float[] queryVector, String queryText, TaskScope scope) {
+        double alpha = properties.getAlpha();
+        int limit = properties.getCandidateLimit();
+        if (properties.getFusion() != Fusion.SQL) {
+            return fusionSearch.search(queryVector, queryText, limit, scope);
+        }
+        Optional<List<VectorHit>> vectorHits = properties.getVectorSearch() == VectorSearch.DATABASE
+                ? Optional.empty()
+                : scope == null ? chunkVectorIndex.search(queryVector, limit)
+                        : chunkVectorIndex.search(queryVector, limit, scope);
+        Optional<List<LexicalHit>> lexicalHits = properties.getLexicalSearch() == LexicalSearch.DATABASE
+                ? Optional.empty()
+                : scope == null ? chunkLexicalIndex.search(queryText, limit)
+                        : chunkLexicalIndex.search(queryText, limit, scope);
+        if (vectorHits.isPresent() && lexicalHits.isPresent()) {
+            // Both halves ran in process; min-max fusion is the formula of the SQL statement, so skip the round trip.
+            return ScoreFusion.fuse(vectorHits.get(), lexicalHits.get(), Fusion.MIN_MAX, alpha, properties.getRrfK(),
+                    limit);
+        }
+        String query = HYBRID_QUERY_TEMPLATE.formatted(
+                vectorHits.isPresent() ? PROVIDED_VEC : scope == null ? databaseVec : SCOPED_DATABASE_VEC,
+                lexicalHits.isPresent() ? PROVIDED_BM : scope == null ? DATABASE_BM : SCOPED_DATABASE_BM);
         try {
-            return jdbcClient.sql(HYBRID_QUERY)
-                    .param(new PGvector(queryVector))
-                    .param(queryText)
-                    .param(alpha)
-                    .param(limit)
-                    .query(new DatabaseDocumentRowMapper())
-                    .list();
+            return CancellableJdbc.query(jdbcTemplate, query, statement -> {
+                if (vectorHits.isPresent()) {
+                    statement.setNull(1, Types.OTHER);
+                } else {
+                    statement.setObject(1, new PGvector(queryVector));
+                }
+                statement.setString(2, queryText);
+                statement.setDouble(3, alpha);
+                statement.setInt(4, limit);
+                setTasks(statement, 5, scope);
+                int index = 6;
+                if (vectorHits.isPresent()) {
+                    List<VectorHit> hits = vectorHits.get();
+                    setHits(statement, index, hits.stream().map(VectorHit::id).toArray(Long[]::new),
+                            hits.stream().map(hit -> (double) hit.score()).toArray(Double[]::new));
+                    index += 2;
+                }
+                if (lexicalHits.isPresent()) {
+                    List<LexicalHit> hits = lexicalHits.get();
+                    setHits(statement, index, hits.stream().map(LexicalHit::id).toArray(Long[]::new),
+                            hits.stream().map(hit -> (double) hit.score()).toArray(Double[]::new));
+                }
+            }, new FusedHitRowMapper());
         } catch (DataAccessException ex) {
-            log.error("Failed to execute retrieval query", ex);
+            if (CancellationScope.current().isCancelled()) {
+                log.debug("Retrieval query cancelled");
+                cancelledQueries.increment();
+            } else {
+                log.error("Failed to execute retrieval query", ex);
+            }
             return List.of();
         }
     }
 
-    private List<RerankedDocument> rerankCandidates(String userMessage, List<DatabaseDocument> candidates, int rerankTopK) {
-        ChatModel reranker = rerankerProvider.getIfAvailable();
-        List<DatabaseDocument> limited = candidates.stream().limit(rerankTopK).toList();
-        log.debug("limited total: {}", limited.size());
-
-        if (reranker == null) {
-            log.warn("No ChatModel available for reranking; using hybrid scores");
-            return limited.stream().map(doc -> new RerankedDocument(doc, doc.hybridScore())).sorted(
-                    Comparator.comparingDouble(RerankedDocument::score).reversed()).toList();
+    /**
+     * Hydration phase: the hits with their chunk text from the {@link ChunkStore}, in the order of the hits.
+     */
+    private List<RetrievalCandidate> hydrate(List<FusedHit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
         }
-
-        List<RerankedDocument> results = new ArrayList<>();
-        for (DatabaseDocument candidate : limited) {
-            double score = scoreWithCrossEncoder(reranker, userMessage, candidate);
-            log.debug("score: {}", score);
-            log.debug(candidate.taskName);
-            results.add(new RerankedDocument(candidate, score));
+        Map<Long, StoredChunk> chunks;
+        try {
+            chunks = chunkStore.get(hits.stream().map(FusedHit::id).toList());
+        } catch (DataAccessException ex) {
+            if (CancellationScope.current().isCancelled()) {
+                log.debug("Chunk query cancelled");
+                cancelledQueries.increment();
+            } else {
+                log.error("Failed to load retrieved chunks", ex);
+            }
+            return List.of();
+        }
+        List<RetrievalCandidate> candidates = new ArrayList<>(hits.size());
+        for (FusedHit hit : hits) {
+            StoredChunk chunk = chunks.get(hit.id());
+            if (chunk != null) {
+                candidates.add(new RetrievalCandidate(chunk.id(), chunk.taskName(), chunk.heading(), chunk.url(),
+                        chunk.contentText(), hit.vectorNorm(), hit.bm25Norm(), hit.score()));
+            }
         }
+        return candidates;
+    }
 
-        return results.stream().sorted(Comparator.comparingDouble(RerankedDocument::score).reversed()).toList();
+    private static void setHits(PreparedStatement statement, int index, Long[] ids, Double[] scores)
+            throws SQLException {
+        statement.setArray(index, statement.getConnection().createArrayOf("bigint", ids));
+        statement.setArray(index + 1, statement.getConnection().createArrayOf("float8", scores));
     }
 
-    private double scoreWithCrossEncoder(ChatModel reranker, String query, DatabaseDocument candidate) {
-        String passage = Optional.ofNullable(candidate.contentText()).map(String::trim).orElse("");
-        if (!StringUtils.hasText(passage)) {
-            return candidate.hybridScore();
+    /**
+     * Binds the stored task names of {@code scope}, or {@code NULL} for an unscoped query.
+     */
+    static void setTasks(PreparedStatement statement, int index, TaskScope scope) throws SQLException {
+        if (scope == null) {
+            statement.setNull(index, Types.ARRAY);
+        } else {
+            statement.setArray(index,
+                    statement.getConnection().createArrayOf("text", scope.taskNames().toArray(String[]::new)));
         }
+    }
 
-        String promptText = "Query: " + query + "\n\nPassage:\n" + truncateForPrompt(passage);
-        Prompt prompt = new Prompt(List.of(
-                new SystemMessage(
-                        "You are a retrieval cross-encoder. Score how relevant the passage is for the query. "
-                                + "Return only a floating point number between 0 and 1."),
-                new UserMessage(promptText)));
-
-        try {
-            String content = reranker.call(prompt).getResult().getOutput().getText();
-            double parsed = parseScore(content).orElse(candidate.hybridScore());
-            return clamp(parsed, 0.0, 1.0);
-        } catch (Exception ex) {
-            log.warn("Reranker failed, falling back to hybrid score", ex);
-            return candidate.hybridScore();
+    /**
+     * The vector half of the hybrid query. The prefix shortlist is only used if its HNSW expression index exists;
+     * without it pgvector would compute {@code subvector()} on every row.
+     */
+    static String databaseVec(RetrievalProperties properties, JdbcTemplate jdbcTemplate) {
+        int prefixDimensions = properties.getPrefixDimensions();
+        if (prefixDimensions <= 0 || prefixDimensions >= EMBEDDING_DIMENSIONS) {
+            return DATABASE_VEC;
+        }
+        if (!hasPrefixIndex(jdbcTemplate, prefixDimensions)) {
+            log.warn("No HNSW index on the leading {} dimensions of rag.doc_chunks (see "
+                    + "R__doc_chunks_prefix_hnsw.sql), pgvector search uses the full embeddings", prefixDimensions);
+            return DATABASE_VEC;
         }
+        log.info("pgvector search shortlists by the leading {} dimensions", prefixDimensions);
+        return DATABASE_PREFIX_VEC.formatted(prefixDimensions, Math.max(1, properties.getPrefixRescoreMultiplier()));
     }
 
-    private Optional<Double> parseScore(String response) {
-        if (response == null) {
-            return Optional.empty();
+    /**
+     * Fails the startup if the lexical half of the hybrid query would hit a schema without the migrations. An
+     * unreachable database is only logged, like the other startup reads.
+     */
+    static void verifySchema(JdbcTemplate jdbcTemplate) {
+        Boolean migrated;
+        try {
+            migrated = jdbcTemplate.queryForObject(CONTENT_TSV_QUERY, Boolean.class);
+        } catch (DataAccessException ex) {
+            log.warn("Unable to check the rag schema", ex);
+            return;
         }
-        Matcher matcher = SCORE_PATTERN.matcher(response);
-        if (matcher.find()) {
-            try {
-                return Optional.of(Double.parseDouble(matcher.group(1)));
-            } catch (NumberFormatException ex) {
-                log.debug("Unable to parse reranker score from {}", response, ex);
-            }
+        if (!Boolean.TRUE.equals(migrated)) {
+            throw new IllegalStateException("rag.doc_chunks.content_tsv is missing; enable the migrations with "
+                    + "spring.flyway.enabled=true or the database profile");
         }
-        return Optional.empty();
     }
 
-    private String truncateForPrompt(String text) {
-        int maxLength = 2000;
-        if (text.length() <= maxLength) {
-            return text;
+    private static boolean hasPrefixIndex(JdbcTemplate jdbcTemplate, int prefixDimensions) {
+        try {
+            Boolean exists = jdbcTemplate.queryForObject(PREFIX_INDEX_QUERY, Boolean.class,
+                    "%subvector(embedding, 1, " + prefixDimensions + ")%");
+            return Boolean.TRUE.equals(exists);
+        } catch (DataAccessException ex) {
+            log.warn("Unable to look up the prefix index", ex);
+            return false;
         }
-        return text.substring(0, maxLength) + "…";
     }
 
-    private RetrievedDocument toRetrievedDocument(RerankedDocument doc) {
-        DatabaseDocument candidate = doc.document();
+    private RetrievedDocument toRetrievedDocument(RerankedCandidate doc) {
+        RetrievalCandidate candidate = doc.candidate();
         String snippet = buildSnippet(candidate.contentText());
         return new RetrievedDocument(categoryFromTask(candidate.taskName()), titleFromHeading(candidate.heading()), snippet,
                 candidate.url(), doc.score());
@@ -288,23 +507,11 @@ public class DatabaseRetrievalService implements RetrievalService {
         return normalized.substring(0, limit) + "…";
     }
 
-    private double clamp(double value, double min, double max) {
-        return Math.max(min, Math.min(max, value));
-    }
-
-    private record DatabaseDocument(long id, String taskName, String heading, String url, String contentText,
-            double vectorNorm, double bm25Norm, double hybridScore) {
-    }
-
-    private record RerankedDocument(DatabaseDocument document, double score) {
-    }
-
-    private static class DatabaseDocumentRowMapper implements RowMapper<DatabaseDocument> {
+    private static class FusedHitRowMapper implements RowMapper<FusedHit> {
         @Override
-        public DatabaseDocument mapRow(ResultSet rs, int rowNum) throws SQLException {
-            return new DatabaseDocument(rs.getLong("id"), rs.getString("task_name"), rs.getString("heading"),
-                    rs.getString("url"), rs.getString("content_text"), getDouble(rs, "vector_norm"),
-                    getDouble(rs, "bm25_norm"), getDouble(rs, "hybrid_score"));
+        public FusedHit mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new FusedHit(rs.getLong("id"), getDouble(rs, "vector_norm"), getDouble(rs, "bm25_norm"),
+                    getDouble(rs, "hybrid_score"));
         }
 
         private double getDouble(ResultSet rs, String column) throws SQLException {
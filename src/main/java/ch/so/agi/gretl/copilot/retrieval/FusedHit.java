@@ -0,0 +1,9 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+/**
+ * Result of the scoring phase of retrieval: a chunk found by the vector or lexical half of the hybrid search, with
+ * both branch scores min-max normalised ({@code 0} if the branch did not find it) and the fused score. The chunk text
+ * is only added for the survivors, from the {@link ChunkStore}.
+ */
+public record FusedHit(long id, double vectorNorm, double bm25Norm, double score) {
+}
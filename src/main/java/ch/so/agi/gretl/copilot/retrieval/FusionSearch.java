@@ -0,0 +1,190 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Component;
+
+import com.pgvector.PGvector;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import ch.so.agi.gretl.copilot.app.SchedulerConfiguration;
+import ch.so.agi.gretl.copilot.concurrent.CancellableJdbc;
+import ch.so.agi.gretl.copilot.concurrent.CancellationScope;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.LexicalSearch;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.VectorSearch;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Hybrid search with the fusion in process: the vector and the lexical branch run concurrently, each on its own
+ * pooled connection or against its in-process index, and their hits are combined by {@link ScoreFusion}. A failing
+ * branch contributes no hits. The latency of each branch is recorded in {@code gretl.copilot.retrieval.branch},
+ * tagged with the branch and whether it was served from memory or the database.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+public class FusionSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(FusionSearch.class);
+
+    private static final String VECTOR_BRANCH_TEMPLATE = """
+            WITH params AS (
+              SELECT
+                ?::vector(3072) AS q_emb,
+                ?::int          AS candidate_limit,
+                ?::text[]       AS q_tasks
+            )
+            SELECT vec.id, vec.v_score AS score
+            FROM (
+            %s) vec
+            ORDER BY vec.v_score DESC
+            """;
+
+    private static final String LEXICAL_BRANCH_TEMPLATE = """
+            WITH params AS (
+              SELECT
+                plainto_tsquery('simple', ?::text) AS q_query,
+                ?::int                             AS candidate_limit,
+                ?::text[]                          AS q_tasks
+            )
+            SELECT bm.id, bm.b_score AS score
+            FROM (
+            %s) bm
+            ORDER BY bm.b_score DESC
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkVectorIndex chunkVectorIndex;
+    private final ChunkLexicalIndex chunkLexicalIndex;
+    private final RetrievalProperties properties;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final String vectorBranchQuery;
+    private final String lexicalBranchQuery;
+    private final String scopedVectorBranchQuery;
+    private final String scopedLexicalBranchQuery;
+
+    public FusionSearch(JdbcTemplate jdbcTemplate, ChunkVectorIndex chunkVectorIndex,
+            ChunkLexicalIndex chunkLexicalIndex, RetrievalProperties properties,
+            @Qualifier(SchedulerConfiguration.RETRIEVAL_BRANCH_SCHEDULER) Scheduler scheduler,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkVectorIndex = chunkVectorIndex;
+        this.chunkLexicalIndex = chunkLexicalIndex;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+        this.vectorBranchQuery = VECTOR_BRANCH_TEMPLATE.formatted(DatabaseRetrievalService.databaseVec(properties, jdbcTemplate));
+        this.lexicalBranchQuery = LEXICAL_BRANCH_TEMPLATE.formatted(DatabaseRetrievalService.DATABASE_BM);
+        this.scopedVectorBranchQuery = VECTOR_BRANCH_TEMPLATE
+                .formatted(DatabaseRetrievalService.SCOPED_DATABASE_VEC);
+        this.scopedLexicalBranchQuery = LEXICAL_BRANCH_TEMPLATE
+                .formatted(DatabaseRetrievalService.SCOPED_DATABASE_BM);
+    }
+
+    /**
+     * Returns at most {@code limit} fused hits, best first, from the chunks of {@code scope}, or from all chunks if it
+     * is {@code null}. Empty if the surrounding {@link CancellationScope} was cancelled.
+     */
+    public List<FusedHit> search(float[] queryVector, String queryText, int limit, TaskScope scope) {
+        Mono<List<VectorHit>> vectorBranch = branch("vector", () -> vectorHits(queryVector, limit, scope));
+        Mono<List<LexicalHit>> lexicalBranch = branch("lexical", () -> lexicalHits(queryText, limit, scope));
+        CompletableFuture<List<FusedHit>> fused = Mono.zip(vectorBranch, lexicalBranch)
+                .map(branches -> ScoreFusion.fuse(branches.getT1(), branches.getT2(), properties.getFusion(),
+                        properties.getAlpha(), properties.getRrfK(), limit))
+                .toFuture();
+        try (CancellationScope.Registration registration = CancellationScope.current()
+                .onCancel(() -> fused.cancel(true))) {
+            return fused.get();
+        } catch (CancellationException ex) {
+            return List.of();
+        } catch (InterruptedException ex) {
+            fused.cancel(true);
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Fusion of the retrieval branches failed", ex.getCause());
+        }
+    }
+
+    private <T> Mono<List<T>> branch(String name, Supplier<Branch<T>> search) {
+        return CancellationScope.fromCallable(() -> {
+            long start = System.nanoTime();
+            Branch<T> branch = search.get();
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("gretl.copilot.retrieval.branch").tag("branch", name).tag("source", branch.source())
+                    .register(meterRegistry).record(elapsed, TimeUnit.NANOSECONDS);
+            log.debug("{} branch ({}) returned {} hits in {} us", name, branch.source(), branch.hits().size(),
+                    TimeUnit.NANOSECONDS.toMicros(elapsed));
+            return branch.hits();
+        }, scheduler);
+    }
+
+    private Branch<VectorHit> vectorHits(float[] queryVector, int limit, TaskScope scope) {
+        if (properties.getVectorSearch() != VectorSearch.DATABASE) {
+            Optional<List<VectorHit>> hits = scope == null ? chunkVectorIndex.search(queryVector, limit)
+                    : chunkVectorIndex.search(queryVector, limit, scope);
+            if (hits.isPresent()) {
+                return new Branch<>("memory", hits.get());
+            }
+        }
+        String sql = scope == null ? vectorBranchQuery : scopedVectorBranchQuery;
+        return new Branch<>("database", query("vector", sql, statement -> {
+            statement.setObject(1, new PGvector(queryVector));
+            statement.setInt(2, limit);
+            DatabaseRetrievalService.setTasks(statement, 3, scope);
+        }, VectorHit::new));
+    }
+
+    private Branch<LexicalHit> lexicalHits(String queryText, int limit, TaskScope scope) {
+        if (properties.getLexicalSearch() == LexicalSearch.MEMORY) {
+            Optional<List<LexicalHit>> hits = scope == null ? chunkLexicalIndex.search(queryText, limit)
+                    : chunkLexicalIndex.search(queryText, limit, scope);
+            if (hits.isPresent()) {
+                return new Branch<>("memory", hits.get());
+            }
+        }
+        String sql = scope == null ? lexicalBranchQuery : scopedLexicalBranchQuery;
+        return new Branch<>("database", query("lexical", sql, statement -> {
+            statement.setString(1, queryText);
+            statement.setInt(2, limit);
+            DatabaseRetrievalService.setTasks(statement, 3, scope);
+        }, LexicalHit::new));
+    }
+
+    private <T> List<T> query(String name, String sql, PreparedStatementSetter setter, HitFactory<T> factory) {
+        try {
+            return CancellableJdbc.query(jdbcTemplate, sql, setter,
+                    (rs, rowNum) -> factory.create(rs.getLong("id"), rs.getFloat("score")));
+        } catch (DataAccessException ex) {
+            if (!CancellationScope.current().isCancelled()) {
+                log.error("Failed to execute {} branch query", name, ex);
+            }
+            return List.of();
+        }
+    }
+
+    @FunctionalInterface
+    private interface HitFactory<T> {
+        T create(long id, float score);
+    }
+
+    private record Branch<T>(String source, List<T> hits) {
+    }
+}
@@ -0,0 +1,7 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+/**
+ * A chunk matched by the {@link Bm25Index} with its BM25F score.
+ */
+public record LexicalHit(long id, float score) {
+}
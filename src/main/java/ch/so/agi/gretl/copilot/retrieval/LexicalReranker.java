@@ -0,0 +1,159 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+import ch.so.agi.gretl.copilot.intent.IntentLabel;
+
+/**
+ * Reranks in process without any model call. The score is a weighted sum of three features, each in {@code [0, 1]}:
+ * <ul>
+ * <li>BM25F over heading and content of the candidate set, normalised by the best candidate,</li>
+ * <li>a match of the candidate's task name against the intent labels or the query terms,</li>
+ * <li>the normalised vector score of the hybrid query.</li>
+ * </ul>
+ * Document frequencies are taken from the candidate set itself, which is what the hybrid query already narrowed
+ * down to.
+ */
+@Component
+@ConditionalOnProperty(prefix = "gretl.copilot.retrieval", name = "reranker", havingValue = "lexical")
+public class LexicalReranker implements Reranker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double HEADING_BOOST = 2.0;
+    private static final double CONTENT_BOOST = 1.0;
+
+    private final RetrievalProperties properties;
+
+    public LexicalReranker(RetrievalProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public List<RerankedCandidate> rerank(String query, IntentClassification classification,
+            List<RetrievalCandidate> candidates) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Set<String> queryTerms = new LinkedHashSet<>(TextAnalyzer.tokenize(query));
+        double[] lexical = bm25f(queryTerms, candidates);
+
+        double best = 0.0;
+        for (double score : lexical) {
+            best = Math.max(best, score);
+        }
+
+        double lexicalWeight = properties.getLexicalWeight();
+        double taskWeight = properties.getTaskMatchWeight();
+        double vectorWeight = properties.getVectorWeight();
+        RerankedCandidate[] results = new RerankedCandidate[candidates.size()];
+        for (int index = 0; index < results.length; index++) {
+            RetrievalCandidate candidate = candidates.get(index);
+            double score = lexicalWeight * (best > 0.0 ? lexical[index] / best : 0.0)
+                    + taskWeight * taskMatch(candidate.taskName(), queryTerms, classification)
+                    + vectorWeight * candidate.vectorNorm();
+            results[index] = new RerankedCandidate(candidate, score);
+        }
+        return Arrays.stream(results)
+                .sorted(Comparator.comparingDouble(RerankedCandidate::score).reversed()).toList();
+    }
+
+    private double[] bm25f(Set<String> queryTerms, List<RetrievalCandidate> candidates) {
+        int count = candidates.size();
+        double[] scores = new double[count];
+        if (queryTerms.isEmpty()) {
+            return scores;
+        }
+
+        List<Map<String, Integer>> headingFrequencies = new ArrayList<>(count);
+        List<Map<String, Integer>> contentFrequencies = new ArrayList<>(count);
+        int[] headingLengths = new int[count];
+        int[] contentLengths = new int[count];
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        double headingTotal = 0;
+        double contentTotal = 0;
+
+        for (int index = 0; index < count; index++) {
+            RetrievalCandidate candidate = candidates.get(index);
+            List<String> heading = TextAnalyzer.tokenize(candidate.heading());
+            List<String> content = TextAnalyzer.tokenize(candidate.contentText());
+            headingLengths[index] = heading.size();
+            contentLengths[index] = content.size();
+            headingTotal += heading.size();
+            contentTotal += content.size();
+
+            Map<String, Integer> headingTf = termFrequencies(heading, queryTerms);
+            Map<String, Integer> contentTf = termFrequencies(content, queryTerms);
+            headingFrequencies.add(headingTf);
+            contentFrequencies.add(contentTf);
+            for (String term : queryTerms) {
+                if (headingTf.containsKey(term) || contentTf.containsKey(term)) {
+                    documentFrequencies.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        double averageHeading = Math.max(1.0, headingTotal / count);
+        double averageContent = Math.max(1.0, contentTotal / count);
+        for (int index = 0; index < count; index++) {
+            double headingNorm = 1.0 - B + B * headingLengths[index] / averageHeading;
+            double contentNorm = 1.0 - B + B * contentLengths[index] / averageContent;
+            double score = 0.0;
+            for (String term : queryTerms) {
+                double tf = HEADING_BOOST * headingFrequencies.get(index).getOrDefault(term, 0) / headingNorm
+                        + CONTENT_BOOST * contentFrequencies.get(index).getOrDefault(term, 0) / contentNorm;
+                if (tf == 0.0) {
+                    continue;
+                }
+                int df = documentFrequencies.getOrDefault(term, 0);
+                double idf = Math.log(1.0 + (count - df + 0.5) / (df + 0.5));
+                score += idf * tf / (K1 + tf);
+            }
+            scores[index] = score;
+        }
+        return scores;
+    }
+
+    private Map<String, Integer> termFrequencies(List<String> terms, Set<String> queryTerms) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            if (queryTerms.contains(term)) {
+                frequencies.merge(term, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+
+    private double taskMatch(String taskName, Set<String> queryTerms, IntentClassification classification) {
+        if (!StringUtils.hasText(taskName)) {
+            return 0.0;
+        }
+        String task = taskName.trim().toLowerCase(Locale.ROOT);
+        if (queryTerms.contains(task)) {
+            return 1.0;
+        }
+        double match = 0.0;
+        if (classification != null) {
+            String label = "task." + task;
+            for (IntentLabel intent : classification.allLabels()) {
+                if (label.equals(intent.label())) {
+                    match = Math.max(match, Math.max(0.0, Math.min(1.0, intent.confidence())));
+                }
+            }
+        }
+        return match;
+    }
+}
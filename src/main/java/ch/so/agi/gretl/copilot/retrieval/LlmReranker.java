@@ -0,0 +1,313 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import ch.so.agi.gretl.copilot.concurrent.CancellationScope;
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+
+/**
+ * Uses the chat model as a cross-encoder. How the candidates are put to the model is controlled by
+ * {@link RetrievalProperties#getRerankMode()}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "gretl.copilot.retrieval", name = "reranker", havingValue = "llm", matchIfMissing = true)
+public class LlmReranker implements Reranker {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmReranker.class);
+
+    private static final Pattern SCORE_PATTERN = Pattern.compile("(-?\\d+(?:\\.\\d+)?)");
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ObjectProvider<ChatModel> rerankerProvider;
+    private final RetrievalProperties properties;
+    private final RerankScoreCache scoreCache;
+    private final Counter skippedRerankCalls;
+
+    public LlmReranker(ObjectProvider<ChatModel> rerankerProvider, RetrievalProperties properties,
+            RerankScoreCache scoreCache, MeterRegistry meterRegistry) {
+        this.rerankerProvider = rerankerProvider;
+        this.properties = properties;
+        this.scoreCache = scoreCache;
+        this.skippedRerankCalls = Counter.builder("gretl.copilot.cancelled.calls").tag("stage", "rerank")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<RerankedCandidate> rerank(String userMessage, IntentClassification classification,
+            List<RetrievalCandidate> limited) {
+        ChatModel reranker = rerankerProvider.getIfAvailable();
+
+        if (reranker == null) {
+            log.warn("No ChatModel available for reranking; using hybrid scores");
+            return limited.stream().map(doc -> new RerankedCandidate(doc, doc.hybridScore())).sorted(
+                    Comparator.comparingDouble(RerankedCandidate::score).reversed()).toList();
+        }
+
+        // Only candidates without a cached score for this question are sent to the model.
+        Map<Long, Double> cached = scoreCache.lookup(userMessage, limited);
+        List<RerankedCandidate> results = new ArrayList<>();
+        List<RetrievalCandidate> uncached = new ArrayList<>();
+        for (RetrievalCandidate candidate : limited) {
+            Double score = cached.get(candidate.id());
+            if (score != null) {
+                results.add(new RerankedCandidate(candidate, score));
+            } else {
+                uncached.add(candidate);
+            }
+        }
+        log.debug("Reranker scores cached for {} of {} candidates", results.size(), limited.size());
+
+        if (!uncached.isEmpty()) {
+            results.addAll(switch (properties.getRerankMode()) {
+            case LISTWISE -> rerankListwise(reranker, userMessage, uncached);
+            case PARALLEL -> rerankParallel(reranker, userMessage, uncached);
+            case SEQUENTIAL -> rerankSequential(reranker, userMessage, uncached);
+            });
+        }
+
+        return results.stream().sorted(Comparator.comparingDouble(RerankedCandidate::score).reversed()).toList();
+    }
+
+    private List<RerankedCandidate> rerankSequential(ChatModel reranker, String userMessage,
+            List<RetrievalCandidate> limited) {
+        CancellationScope scope = CancellationScope.current();
+        List<RerankedCandidate> results = new ArrayList<>();
+        for (RetrievalCandidate candidate : limited) {
+            if (scope.isCancelled()) {
+                // Nobody is waiting for the answer any more; skip the remaining reranker calls.
+                skippedRerankCalls.increment(limited.size() - results.size());
+                log.debug("Reranking cancelled; skipped {} candidates", limited.size() - results.size());
+                break;
+            }
+            double score = scoreWithCrossEncoder(reranker, userMessage, candidate);
+            log.debug("score: {}", score);
+            log.debug(candidate.taskName);
+            results.add(new RerankedCandidate(candidate, score));
+        }
+        return results;
+    }
+
+    /**
+     * Pointwise scoring with a bounded number of concurrent reranker calls on virtual threads. Candidates whose call
+     * fails keep their hybrid score.
+     */
+    private List<RerankedCandidate> rerankParallel(ChatModel reranker, String userMessage,
+            List<RetrievalCandidate> limited) {
+        CancellationScope scope = CancellationScope.current();
+        Semaphore permits = new Semaphore(Math.max(1, properties.getRerankParallelism()));
+        List<RerankedCandidate> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Double>> scores = limited.stream()
+                    .map(candidate -> executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            if (scope.isCancelled()) {
+                                skippedRerankCalls.increment();
+                                return candidate.hybridScore();
+                            }
+                            return scoreWithCrossEncoder(reranker, userMessage, candidate);
+                        } finally {
+                            permits.release();
+                        }
+                    }))
+                    .toList();
+            try (CancellationScope.Registration registration = scope
+                    .onCancel(() -> scores.forEach(score -> score.cancel(true)))) {
+                for (int index = 0; index < limited.size(); index++) {
+                    RetrievalCandidate candidate = limited.get(index);
+                    results.add(new RerankedCandidate(candidate, awaitScore(scores.get(index), candidate)));
+                }
+            }
+        }
+        return results;
+    }
+
+    private double awaitScore(Future<Double> score, RetrievalCandidate candidate) {
+        try {
+            return score.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return candidate.hybridScore();
+        } catch (ExecutionException | CancellationException ex) {
+            log.debug("Reranker call for candidate {} did not complete, using hybrid score", candidate.id(), ex);
+            return candidate.hybridScore();
+        }
+    }
+
+    /**
+     * Scores all candidates with a single prompt. The model answers with a JSON array holding one score per passage.
+     * If the answer holds no such array, or one of another length, the candidates are scored pointwise in parallel
+     * instead.
+     */
+    private List<RerankedCandidate> rerankListwise(ChatModel reranker, String userMessage,
+            List<RetrievalCandidate> limited) {
+        StringBuilder promptText = new StringBuilder();
+        promptText.append("Query: ").append(userMessage).append("\n\nPassages:\n");
+        for (int index = 0; index < limited.size(); index++) {
+            String passage = Optional.ofNullable(limited.get(index).contentText()).map(String::trim).orElse("");
+            promptText.append("[").append(index + 1).append("] ")
+                    .append(truncate(passage.replaceAll("\\s+", " "), properties.getListwisePassageLength()))
+                    .append("\n\n");
+        }
+        Prompt prompt = new Prompt(List.of(
+                new SystemMessage("You are a retrieval reranker. Score how relevant each numbered passage is for the "
+                        + "query. Return only a JSON array with exactly " + limited.size()
+                        + " floating point numbers between 0 and 1, one per passage in the given order."),
+                new UserMessage(promptText.toString())));
+
+        Optional<List<Double>> scores;
+        try {
+            scores = parseScoreArray(reranker.call(prompt).getResult().getOutput().getText(), limited.size());
+        } catch (Exception ex) {
+            if (CancellationScope.current().isCancelled()) {
+                skippedRerankCalls.increment();
+                return hybridScores(limited);
+            }
+            log.warn("Listwise reranker failed, falling back to pointwise scoring", ex);
+            scores = Optional.empty();
+        }
+        if (scores.isEmpty()) {
+            return rerankParallel(reranker, userMessage, limited);
+        }
+
+        List<RerankedCandidate> results = new ArrayList<>();
+        for (int index = 0; index < limited.size(); index++) {
+            RetrievalCandidate candidate = limited.get(index);
+            double score = clamp(scores.get().get(index), 0.0, 1.0);
+            scoreCache.put(userMessage, candidate.id(), score);
+            results.add(new RerankedCandidate(candidate, score));
+        }
+        return results;
+    }
+
+    private List<RerankedCandidate> hybridScores(List<RetrievalCandidate> candidates) {
+        return candidates.stream().map(doc -> new RerankedCandidate(doc, doc.hybridScore())).toList();
+    }
+
+    /**
+     * Parses the last JSON array in the response; the passages are numbered {@code [1]}, {@code [2]}, ... in the
+     * prompt, so an earlier bracket may be an echoed passage number. Empty unless the array holds exactly
+     * {@code expected} numbers.
+     */
+    static Optional<List<Double>> parseScoreArray(String response, int expected) {
+        if (response == null) {
+            return Optional.empty();
+        }
+        int end = response.lastIndexOf(']');
+        for (int start = response.lastIndexOf('[', end); start >= 0; start = response.lastIndexOf('[', start - 1)) {
+            JsonNode array;
+            try {
+                array = JSON.readTree(response.substring(start, end + 1));
+            } catch (JsonProcessingException ex) {
+                continue;
+            }
+            if (!array.isArray()) {
+                continue;
+            }
+            List<Double> scores = new ArrayList<>(array.size());
+            for (JsonNode entry : array) {
+                if (!entry.isNumber()) {
+                    log.debug("Non-numeric entry in listwise reranker response {}", response);
+                    return Optional.empty();
+                }
+                scores.add(entry.doubleValue());
+            }
+            if (scores.size() != expected) {
+                log.debug("Listwise reranker returned {} scores for {} passages", scores.size(), expected);
+                return Optional.empty();
+            }
+            return Optional.of(scores);
+        }
+        log.debug("No score array in listwise reranker response {}", response);
+        return Optional.empty();
+    }
+
+    private double scoreWithCrossEncoder(ChatModel reranker, String query, RetrievalCandidate candidate) {
+        String passage = Optional.ofNullable(candidate.contentText()).map(String::trim).orElse("");
+        if (!StringUtils.hasText(passage)) {
+            return candidate.hybridScore();
+        }
+
+        String promptText = "Query: " + query + "\n\nPassage:\n" + truncateForPrompt(passage);
+        Prompt prompt = new Prompt(List.of(
+                new SystemMessage(
+                        "You are a retrieval cross-encoder. Score how relevant the passage is for the query. "
+                                + "Return only a floating point number between 0 and 1."),
+                new UserMessage(promptText)));
+
+        try {
+            String content = reranker.call(prompt).getResult().getOutput().getText();
+            Optional<Double> parsed = parseScore(content);
+            if (parsed.isEmpty()) {
+                return clamp(candidate.hybridScore(), 0.0, 1.0);
+            }
+            double score = clamp(parsed.get(), 0.0, 1.0);
+            scoreCache.put(query, candidate.id(), score);
+            return score;
+        } catch (Exception ex) {
+            log.warn("Reranker failed, falling back to hybrid score", ex);
+            return candidate.hybridScore();
+        }
+    }
+
+    private Optional<Double> parseScore(String response) {
+        if (response == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = SCORE_PATTERN.matcher(response);
+        if (matcher.find()) {
+            try {
+                return Optional.of(Double.parseDouble(matcher.group(1)));
+            } catch (NumberFormatException ex) {
+                log.debug("Unable to parse reranker score from {}", response, ex);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String truncateForPrompt(String text) {
+        return truncate(text, 2000);
+    }
+
+    private String truncate(String text, int maxLength) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        return text.substring(0, maxLength) + "…";
+    }
+
+    private double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,29 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+
+/**
+ * Keeps the hybrid score of the first stage.
+ */
+@Component
+@ConditionalOnProperty(prefix = "gretl.copilot.retrieval", name = "reranker", havingValue = "none")
+public class NoopReranker implements Reranker {
+
+    @Override
+    public List<RerankedCandidate> rerank(String query, IntentClassification classification,
+            List<RetrievalCandidate> candidates) {
+        return candidates.stream().map(candidate -> new RerankedCandidate(candidate, candidate.hybridScore()))
+                .sorted(Comparator.comparingDouble(RerankedCandidate::score).reversed()).toList();
+    }
+
+    @Override
+    public boolean readsContent() {
+        return false;
+    }
+}
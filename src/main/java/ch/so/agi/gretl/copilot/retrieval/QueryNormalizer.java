@@ -0,0 +1,27 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes user questions for use as cache and coalescing keys. Case, Unicode composition, surrounding
+ * punctuation and whitespace differences do not change the meaning of a question and are therefore removed.
+ */
+public final class QueryNormalizer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s\\p{Punct}]+$");
+
+    private QueryNormalizer() {
+    }
+
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+}
@@ -0,0 +1,36 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gretl.copilot.cache.rerank")
+public class RerankCacheProperties {
+    private boolean enabled = true;
+    private int maxEntries = 20_000;
+    private Duration ttl = Duration.ofHours(24);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
@@ -0,0 +1,89 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import ch.so.agi.gretl.copilot.corpus.CorpusChangedEvent;
+
+/**
+ * Reranker scores per (normalized question, chunk). The question is stored as a 64 bit hash of its
+ * {@link QueryNormalizer normalized} form. Scores refer to chunk ids, so the cache is dropped when the corpus is
+ * re-ingested.
+ */
+@Component
+public class RerankScoreCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RerankScoreCache.class);
+
+    private final RerankCacheProperties properties;
+    private final Cache<ScoreKey, Double> cache;
+
+    public RerankScoreCache(RerankCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gretl.copilot.cache.rerank");
+    }
+
+    /**
+     * Returns the cached scores of the candidates, keyed by chunk id. Candidates without a cached score are absent.
+     */
+    public Map<Long, Double> lookup(String query, List<RetrievalCandidate> candidates) {
+        Map<Long, Double> scores = new HashMap<>();
+        if (!properties.isEnabled() || candidates.isEmpty()) {
+            return scores;
+        }
+        long queryHash = hash(query);
+        for (RetrievalCandidate candidate : candidates) {
+            Double score = cache.getIfPresent(new ScoreKey(queryHash, candidate.id()));
+            if (score != null) {
+                scores.put(candidate.id(), score);
+            }
+        }
+        return scores;
+    }
+
+    public void put(String query, long chunkId, double score) {
+        if (properties.isEnabled()) {
+            cache.put(new ScoreKey(hash(query), chunkId), score);
+        }
+    }
+
+    @EventListener(CorpusChangedEvent.class)
+    public void invalidateAll() {
+        log.debug("Dropping {} cached reranker scores", cache.estimatedSize());
+        cache.invalidateAll();
+    }
+
+    private long hash(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(QueryNormalizer.normalize(query).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private record ScoreKey(long queryHash, long chunkId) {
+    }
+}
@@ -0,0 +1,4 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+public record RerankedCandidate(RetrievalCandidate candidate, double score) {
+}
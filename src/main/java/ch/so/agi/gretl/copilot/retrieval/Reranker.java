@@ -0,0 +1,29 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.List;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+
+/**
+ * Second retrieval stage: rescores the candidates of the hybrid query. The implementation is selected with
+ * {@code gretl.copilot.retrieval.reranker}.
+ */
+public interface Reranker {
+
+    /**
+     * Scores the candidates for the query.
+     *
+     * @param classification intent of the query, may be {@code null} when classification runs in parallel
+     * @return the candidates with their new score, best first
+     */
+    List<RerankedCandidate> rerank(String query, IntentClassification classification,
+            List<RetrievalCandidate> candidates);
+
+    /**
+     * Whether the scores depend on the heading and content of the candidates. If not, only the candidates that end up
+     * in the result are hydrated.
+     */
+    default boolean readsContent() {
+        return true;
+    }
+}
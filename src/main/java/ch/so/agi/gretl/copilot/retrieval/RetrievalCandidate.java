@@ -0,0 +1,9 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+/**
+ * A documentation chunk returned by the first retrieval stage, together with its normalised vector and BM25 scores
+ * and the hybrid score combining both.
+ */
+public record RetrievalCandidate(long id, String taskName, String heading, String url, String contentText,
+        double vectorNorm, double bm25Norm, double hybridScore) {
+}
@@ -8,6 +8,21 @@ public class RetrievalProperties {
     private int candidateLimit = 60;
     private int rerankTopK = 50;
     private int finalLimit = 8;
+    private VectorSearch vectorSearch = VectorSearch.DATABASE;
+    private LexicalSearch lexicalSearch = LexicalSearch.DATABASE;
+    private Fusion fusion = Fusion.SQL;
+    private int rrfK = 60;
+    private int prefixDimensions = 0;
+    private int prefixRescoreMultiplier = 4;
+    private boolean intentScope = false;
+    private double intentScopeMinConfidence = 0.6;
+    private RerankerType reranker = RerankerType.LLM;
+    private RerankMode rerankMode = RerankMode.LISTWISE;
+    private int rerankParallelism = 4;
+    private int listwisePassageLength = 600;
+    private double lexicalWeight = 0.5;
+    private double taskMatchWeight = 0.2;
+    private double vectorWeight = 0.3;
 
     public double getAlpha() {
         return alpha;
@@ -40,4 +55,205 @@ public class RetrievalProperties {
     public void setFinalLimit(int finalLimit) {
         this.finalLimit = finalLimit;
     }
+
+    public VectorSearch getVectorSearch() {
+        return vectorSearch;
+    }
+
+    public void setVectorSearch(VectorSearch vectorSearch) {
+        this.vectorSearch = vectorSearch;
+    }
+
+    public LexicalSearch getLexicalSearch() {
+        return lexicalSearch;
+    }
+
+    public void setLexicalSearch(LexicalSearch lexicalSearch) {
+        this.lexicalSearch = lexicalSearch;
+    }
+
+    public Fusion getFusion() {
+        return fusion;
+    }
+
+    public void setFusion(Fusion fusion) {
+        this.fusion = fusion;
+    }
+
+    /**
+     * Rank offset {@code k} of reciprocal rank fusion, {@code score = sum 1 / (k + rank)}.
+     */
+    public int getRrfK() {
+        return rrfK;
+    }
+
+    public void setRrfK(int rrfK) {
+        this.rrfK = rrfK;
+    }
+
+    /**
+     * Leading dimensions of the embedding used for a first-stage vector search whose shortlist of
+     * {@code candidateLimit * prefixRescoreMultiplier} chunks is rescored with the full embedding. {@code 0} searches
+     * the full embedding directly.
+     */
+    public int getPrefixDimensions() {
+        return prefixDimensions;
+    }
+
+    public void setPrefixDimensions(int prefixDimensions) {
+        this.prefixDimensions = prefixDimensions;
+    }
+
+    public int getPrefixRescoreMultiplier() {
+        return prefixRescoreMultiplier;
+    }
+
+    public void setPrefixRescoreMultiplier(int prefixRescoreMultiplier) {
+        this.prefixRescoreMultiplier = prefixRescoreMultiplier;
+    }
+
+    /**
+     * Restrict both halves of the hybrid query to the chunks of the tasks named by the primary and secondary intent
+     * labels if the classification is at least {@code intentScopeMinConfidence} confident. The whole corpus is
+     * searched if the scope yields fewer than {@code finalLimit} chunks. Enabling it makes the chat pipeline classify
+     * before retrieving, whatever its mode.
+     */
+    public boolean isIntentScope() {
+        return intentScope;
+    }
+
+    public void setIntentScope(boolean intentScope) {
+        this.intentScope = intentScope;
+    }
+
+    public double getIntentScopeMinConfidence() {
+        return intentScopeMinConfidence;
+    }
+
+    public void setIntentScopeMinConfidence(double intentScopeMinConfidence) {
+        this.intentScopeMinConfidence = intentScopeMinConfidence;
+    }
+
+    public RerankerType getReranker() {
+        return reranker;
+    }
+
+    public void setReranker(RerankerType reranker) {
+        this.reranker = reranker;
+    }
+
+    public RerankMode getRerankMode() {
+        return rerankMode;
+    }
+
+    public void setRerankMode(RerankMode rerankMode) {
+        this.rerankMode = rerankMode;
+    }
+
+    public int getRerankParallelism() {
+        return rerankParallelism;
+    }
+
+    public void setRerankParallelism(int rerankParallelism) {
+        this.rerankParallelism = rerankParallelism;
+    }
+
+    public int getListwisePassageLength() {
+        return listwisePassageLength;
+    }
+
+    public void setListwisePassageLength(int listwisePassageLength) {
+        this.listwisePassageLength = listwisePassageLength;
+    }
+
+    public double getLexicalWeight() {
+        return lexicalWeight;
+    }
+
+    public void setLexicalWeight(double lexicalWeight) {
+        this.lexicalWeight = lexicalWeight;
+    }
+
+    public double getTaskMatchWeight() {
+        return taskMatchWeight;
+    }
+
+    public void setTaskMatchWeight(double taskMatchWeight) {
+        this.taskMatchWeight = taskMatchWeight;
+    }
+
+    public double getVectorWeight() {
+        return vectorWeight;
+    }
+
+    public void setVectorWeight(double vectorWeight) {
+        this.vectorWeight = vectorWeight;
+    }
+
+    /**
+     * Where the vector half of the hybrid query is computed.
+     */
+    public enum VectorSearch {
+        /** pgvector distance scan in the hybrid query. */
+        DATABASE,
+        /** In-process HNSW index, see {@link ChunkVectorIndex}; the database is used until it is built. */
+        HNSW,
+        /**
+         * In-process scan over all chunk embeddings; exact unless {@code gretl.copilot.vector.quantization} selects a
+         * quantized first stage.
+         */
+        EXACT
+    }
+
+    /**
+     * Where the lexical half of the hybrid query is computed.
+     */
+    public enum LexicalSearch {
+        /** {@code ts_rank_cd} over {@code to_tsvector('simple', ...)} in the hybrid query. */
+        DATABASE,
+        /** In-process BM25F, see {@link ChunkLexicalIndex}; the database is used until it is built. */
+        MEMORY
+    }
+
+    /**
+     * How the vector and lexical halves are combined into the hybrid score.
+     */
+    public enum Fusion {
+        /**
+         * Min-max normalisation and {@code alpha} weighting inside one SQL statement; in process like
+         * {@link #MIN_MAX} if both halves are served by in-process indexes.
+         */
+        SQL,
+        /**
+         * Both halves queried concurrently and fused in process with min-max normalisation and {@code alpha}
+         * weighting, see {@link ScoreFusion}.
+         */
+        MIN_MAX,
+        /** Both halves queried concurrently and fused in process by reciprocal rank, see {@link ScoreFusion}. */
+        RRF
+    }
+
+    /**
+     * Which {@link Reranker} implementation scores the candidates of the hybrid query.
+     */
+    public enum RerankerType {
+        /** The chat model acting as cross-encoder, see {@link RerankMode}. */
+        LLM,
+        /** Keep the hybrid score. */
+        NONE,
+        /** In-process BM25F, task-name and vector features; no network call. */
+        LEXICAL
+    }
+
+    /**
+     * How the LLM reranker scores the candidates.
+     */
+    public enum RerankMode {
+        /** All candidates in one prompt; the model answers with an array of scores. */
+        LISTWISE,
+        /** One prompt per candidate, with at most {@code rerankParallelism} calls in flight. */
+        PARALLEL,
+        /** One prompt per candidate, one after the other. */
+        SEQUENTIAL
+    }
 }
@@ -4,4 +4,21 @@ import ch.so.agi.gretl.copilot.intent.IntentClassification;
 
 public interface RetrievalService {
     RetrievalResult retrieve(String userMessage, IntentClassification classification);
+
+    /**
+     * Retrieves documents using an embedding that was already computed for the message. An empty array means that
+     * no embedding is available. The classification is {@code null} when the pipeline runs classification and
+     * retrieval concurrently. Implementations that do not work with embeddings can rely on the default.
+     */
+    default RetrievalResult retrieve(String userMessage, float[] queryEmbedding, IntentClassification classification) {
+        return retrieve(userMessage, classification);
+    }
+
+    /**
+     * Whether the retrieval depends on the classification, in which case the pipeline classifies first even if it
+     * is configured to run both concurrently.
+     */
+    default boolean usesClassification() {
+        return false;
+    }
 }
@@ -0,0 +1,100 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.Fusion;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
+
+/**
+ * Fuses the ranked hits of the vector and lexical halves of the hybrid search.
+ * <ul>
+ * <li>{@link Fusion#MIN_MAX}: {@code alpha * bm25Norm + (1 - alpha) * vectorNorm}, the same formula as the SQL
+ * fusion.</li>
+ * <li>{@link Fusion#RRF}: {@code sum 1 / (k + rank)} over the branches that found the chunk, with ranks starting at
+ * 1. Depends on the ranks only, so the very different score scales of the branches need no tuning. The sum is
+ * divided by its maximum {@code 2 / (k + 1)}, so the score lies in {@code [0, 1]} like the other fusions and can
+ * stand in for a reranker score.</li>
+ * </ul>
+ */
+public final class ScoreFusion {
+
+    private ScoreFusion() {
+    }
+
+    /**
+     * Returns at most {@code limit} hits, best first. Both hit lists must be sorted best first.
+     */
+    public static List<FusedHit> fuse(List<VectorHit> vectorHits, List<LexicalHit> lexicalHits, Fusion fusion,
+            double alpha, int rrfK, int limit) {
+        if (fusion == Fusion.SQL) {
+            throw new IllegalArgumentException("SQL fusion runs in the database");
+        }
+        Map<Long, double[]> features = new LinkedHashMap<>();
+        double[] vectorScores = new double[vectorHits.size()];
+        for (int rank = 0; rank < vectorHits.size(); rank++) {
+            vectorScores[rank] = vectorHits.get(rank).score();
+        }
+        double[] lexicalScores = new double[lexicalHits.size()];
+        for (int rank = 0; rank < lexicalHits.size(); rank++) {
+            lexicalScores[rank] = lexicalHits.get(rank).score();
+        }
+
+        // features: vectorNorm, bm25Norm, reciprocal rank sum
+        Normalizer vectorNorm = new Normalizer(vectorScores);
+        for (int rank = 0; rank < vectorHits.size(); rank++) {
+            double[] feature = features.computeIfAbsent(vectorHits.get(rank).id(), id -> new double[3]);
+            feature[0] = vectorNorm.apply(vectorScores[rank]);
+            feature[2] += 1.0 / (rrfK + rank + 1);
+        }
+        Normalizer lexicalNorm = new Normalizer(lexicalScores);
+        for (int rank = 0; rank < lexicalHits.size(); rank++) {
+            double[] feature = features.computeIfAbsent(lexicalHits.get(rank).id(), id -> new double[3]);
+            feature[1] = lexicalNorm.apply(lexicalScores[rank]);
+            feature[2] += 1.0 / (rrfK + rank + 1);
+        }
+
+        double maxReciprocalRank = 2.0 / (rrfK + 1);
+        List<FusedHit> fused = new ArrayList<>(features.size());
+        features.forEach((id, feature) -> {
+            double score = fusion == Fusion.RRF ? feature[2] / maxReciprocalRank : alpha * feature[1] + (1.0 - alpha) * feature[0];
+            fused.add(new FusedHit(id, feature[0], feature[1], score));
+        });
+        return fused.stream()
+                .sorted(Comparator.comparingDouble(FusedHit::score).reversed().thenComparingLong(FusedHit::id))
+                .limit(limit).toList();
+    }
+
+    /**
+     * Min-max normalisation to {@code [0, 1]}; all scores map to {@code 0} if they are equal, as in the SQL fusion.
+     */
+    private record Normalizer(double min, double range) {
+
+        Normalizer(double[] scores) {
+            this(min(scores), max(scores) - min(scores));
+        }
+
+        double apply(double score) {
+            return range > 0.0 ? (score - min) / range : 0.0;
+        }
+
+        private static double min(double[] scores) {
+            double min = Double.POSITIVE_INFINITY;
+            for (double score : scores) {
+                min = Math.min(min, score);
+            }
+            return min;
+        }
+
+        private static double max(double[] scores) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (double score : scores) {
+                max = Math.max(max, score);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+/**
+ * The text and metadata of a {@code rag.doc_chunks} row as held by the {@link ChunkStore}.
+ */
+public record StoredChunk(long id, String taskName, String heading, String url, String contentText) {
+}
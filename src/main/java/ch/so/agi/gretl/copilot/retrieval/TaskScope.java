@@ -0,0 +1,41 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The chunks of a set of tasks that retrieval is restricted to: the {@code task_name}s as stored, for the
+ * {@code idx_doc_chunks_task_section} lookup in the database, and the sorted chunk ids, for the in-process indexes.
+ */
+public final class TaskScope {
+
+    private final List<String> taskNames;
+    private final long[] ids;
+
+    TaskScope(List<String> taskNames, long[] ids) {
+        this.taskNames = List.copyOf(taskNames);
+        this.ids = ids.clone();
+        Arrays.sort(this.ids);
+    }
+
+    public List<String> taskNames() {
+        return taskNames;
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public long[] ids() {
+        return ids.clone();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public String toString() {
+        return taskNames + " (" + ids.length + " chunks)";
+    }
+}
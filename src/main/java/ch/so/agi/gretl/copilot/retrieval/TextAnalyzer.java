@@ -0,0 +1,149 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lowercase terms for the in-process lexical scoring. Umlauts are folded ({@code ä} to {@code a},
+ * {@code ß} to {@code ss}) so that queries typed without them still match, and camel-case identifiers such as task
+ * names additionally yield their parts ({@code Ili2pgImport} gives {@code ili2pgimport}, {@code ili2pg} and
+ * {@code import}). {@link #analyze} additionally drops German and English stop words and reduces German inflection
+ * with a light stemmer, for the terms of the inverted index.
+ */
+public final class TextAnalyzer {
+
+    private static final int MIN_TERM_LENGTH = 2;
+
+    /** Stop words, already folded. */
+    private static final Set<String> STOP_WORDS = Set.of("aber", "als", "am", "an", "auch", "auf", "aus", "bei",
+            "bin", "bis", "da", "damit", "dann", "das", "dass", "dem", "den", "der", "des", "die", "dies", "diese",
+            "dieser", "dieses", "doch", "du", "ein", "eine", "einem", "einen", "einer", "eines", "er", "es", "fur",
+            "hat", "hatte", "ich", "ihr", "im", "in", "ist", "ja", "kann", "man", "mit", "nach", "nicht", "noch",
+            "nur", "ob", "oder", "sich", "sie", "sind", "so", "uber", "um", "und", "uns", "unter", "vom", "von", "vor",
+            "war", "was", "wie", "wir", "wird", "wo", "zu", "zum", "zur", "and", "are", "as", "at", "be", "by",
+            "for", "from", "how", "if", "is", "it", "of", "on", "or", "that", "the", "this", "to", "with");
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int index = 0; index <= length; index++) {
+            boolean wordChar = index < length && Character.isLetterOrDigit(text.charAt(index));
+            if (wordChar && start < 0) {
+                start = index;
+            } else if (!wordChar && start >= 0) {
+                addWord(text.substring(start, index), terms);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Terms for the inverted index: {@link #tokenize tokens} without stop words, stemmed.
+     */
+    public static List<String> analyze(String text) {
+        List<String> tokens = tokenize(text);
+        List<String> terms = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            if (!STOP_WORDS.contains(token)) {
+                terms.add(stem(token));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Light German stemmer after Savoy: strips the common inflection suffixes in two steps and leaves words containing
+     * digits untouched, so identifiers such as {@code ili2pg} survive.
+     */
+    static String stem(String term) {
+        for (int index = 0; index < term.length(); index++) {
+            if (Character.isDigit(term.charAt(index))) {
+                return term;
+            }
+        }
+        int length = stripInflection(term, term.length());
+        length = stripComparison(term, length);
+        return term.substring(0, length);
+    }
+
+    private static int stripInflection(String term, int length) {
+        if (length > 5 && term.startsWith("ern", length - 3)) {
+            return length - 3;
+        }
+        if (length > 4 && (term.startsWith("em", length - 2) || term.startsWith("en", length - 2)
+                || term.startsWith("er", length - 2) || term.startsWith("es", length - 2))) {
+            return length - 2;
+        }
+        if (length > 3 && term.charAt(length - 1) == 'e') {
+            return length - 1;
+        }
+        if (length > 3 && term.charAt(length - 1) == 's' && isStEnding(term.charAt(length - 2))) {
+            return length - 1;
+        }
+        return length;
+    }
+
+    private static int stripComparison(String term, int length) {
+        if (length > 5 && term.startsWith("est", length - 3)) {
+            return length - 3;
+        }
+        if (length > 4 && (term.startsWith("er", length - 2) || term.startsWith("en", length - 2))) {
+            return length - 2;
+        }
+        if (length > 4 && term.startsWith("st", length - 2) && isStEnding(term.charAt(length - 3))) {
+            return length - 2;
+        }
+        return length;
+    }
+
+    private static boolean isStEnding(char ch) {
+        return switch (ch) {
+            case 'b', 'd', 'f', 'g', 'h', 'k', 'l', 'm', 'n', 't' -> true;
+            default -> false;
+        };
+    }
+
+    private static void addWord(String word, List<String> terms) {
+        addTerm(word, terms);
+        int partStart = 0;
+        for (int index = 1; index < word.length(); index++) {
+            if (Character.isUpperCase(word.charAt(index)) && Character.isLowerCase(word.charAt(index - 1))) {
+                addTerm(word.substring(partStart, index), terms);
+                partStart = index;
+            }
+        }
+        if (partStart > 0) {
+            addTerm(word.substring(partStart), terms);
+        }
+    }
+
+    private static void addTerm(String raw, List<String> terms) {
+        String term = fold(raw.toLowerCase(Locale.ROOT));
+        if (term.length() >= MIN_TERM_LENGTH) {
+            terms.add(term);
+        }
+    }
+
+    private static String fold(String term) {
+        boolean ascii = true;
+        for (int index = 0; index < term.length() && ascii; index++) {
+            ascii = term.charAt(index) < 0x80;
+        }
+        if (ascii) {
+            return term;
+        }
+        String decomposed = Normalizer.normalize(term.replace("ß", "ss"), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "");
+    }
+}
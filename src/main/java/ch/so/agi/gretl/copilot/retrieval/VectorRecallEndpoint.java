@@ -0,0 +1,43 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import ch.so.agi.gretl.copilot.vector.VectorIndexProperties;
+
+/**
+ * {@code /actuator/vectorrecall}: recall@k of the in-process chunk index against exact search, optionally for
+ * another {@code efSearch}. Meant for tuning {@code gretl.copilot.vector.*}.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.ai.openai.embedding.options.model", havingValue = "text-embedding-3-large", matchIfMissing = false)
+@Endpoint(id = "vectorrecall")
+public class VectorRecallEndpoint {
+
+    private final ChunkVectorIndex chunkVectorIndex;
+    private final VectorIndexProperties properties;
+
+    public VectorRecallEndpoint(ChunkVectorIndex chunkVectorIndex, VectorIndexProperties properties) {
+        this.chunkVectorIndex = chunkVectorIndex;
+        this.properties = properties;
+    }
+
+    @ReadOperation
+    public Map<String, Object> recall(@Nullable Integer sampleSize, @Nullable Integer k, @Nullable Integer efSearch) {
+        int samples = sampleSize != null ? sampleSize : properties.getRecallSampleSize();
+        int limit = k != null ? k : properties.getRecallK();
+        int ef = efSearch != null ? efSearch : properties.getEfSearch();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sampleSize", samples);
+        result.put("k", limit);
+        result.put("efSearch", ef);
+        result.put("recall", chunkVectorIndex.measureRecall(samples, limit, ef));
+        return result;
+    }
+}
@@ -1,13 +1,16 @@
 package ch.so.agi.gretl.copilot.session;
 
 import java.time.Instant;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class ChatMessage {
     private final UUID id;
     private final ChatRole role;
     private final Instant timestamp;
     private final StringBuilder content;
+    private volatile CompletableFuture<ResponseContext> responseContext;
 
     public ChatMessage(ChatRole role, String content) {
         this(UUID.randomUUID(), role, content, Instant.now());
@@ -44,4 +47,15 @@ public class ChatMessage {
         this.content.setLength(0);
         this.content.append(newContent);
     }
+
+    /**
+     * Attaches the (possibly still running) computation of the context this assistant message is answered from.
+     */
+    public void attachResponseContext(CompletableFuture<ResponseContext> responseContext) {
+        this.responseContext = responseContext;
+    }
+
+    public Optional<CompletableFuture<ResponseContext>> getResponseContext() {
+        return Optional.ofNullable(responseContext);
+    }
 }
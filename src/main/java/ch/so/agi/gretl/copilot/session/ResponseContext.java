@@ -0,0 +1,11 @@
+package ch.so.agi.gretl.copilot.session;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+import ch.so.agi.gretl.copilot.retrieval.RetrievalResult;
+
+/**
+ * Query embedding, classification and retrieval results an assistant answer is generated from.
+ */
+public record ResponseContext(float[] queryEmbedding, IntentClassification classification,
+        RetrievalResult retrievalResult) {
+}
@@ -0,0 +1,51 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.stream.IntStream;
+
+/**
+ * Top-k scan over all ordinals of a matrix. Large matrices are scanned in blocks on the common fork-join pool and
+ * the per-block heaps merged.
+ */
+final class BlockScan {
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final int PARALLEL_THRESHOLD = 4 * BLOCK_SIZE;
+
+    private BlockScan() {
+    }
+
+    /**
+     * Returns a min-heap with the {@code k} ordinals of {@code 0..size-1} that score highest.
+     */
+    static ScoredHeap topK(int size, int k, Scorer scorer) {
+        if (size < PARALLEL_THRESHOLD) {
+            return scan(0, size, k, scorer);
+        }
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        return IntStream.range(0, blocks).parallel()
+                .mapToObj(block -> scan(block * BLOCK_SIZE, Math.min(size, (block + 1) * BLOCK_SIZE), k, scorer))
+                .reduce((first, second) -> merge(first, second, k))
+                .orElseGet(() -> ScoredHeap.min(1));
+    }
+
+    private static ScoredHeap scan(int from, int to, int k, Scorer scorer) {
+        ScoredHeap best = ScoredHeap.min(k + 1);
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            best.pushBounded(ordinal, scorer.score(ordinal), k);
+        }
+        return best;
+    }
+
+    private static ScoredHeap merge(ScoredHeap first, ScoredHeap second, int k) {
+        while (!second.isEmpty()) {
+            float score = second.topScore();
+            first.pushBounded(second.pop(), score, k);
+        }
+        return first;
+    }
+
+    @FunctionalInterface
+    interface Scorer {
+        float score(int ordinal);
+    }
+}
@@ -0,0 +1,27 @@
+package ch.so.agi.gretl.copilot.vector;
+
+/**
+ * Read-only set of unit-length embeddings addressed by ordinal {@code 0..size()-1}. Each ordinal maps to the id of
+ * the database row the embedding was taken from. Because the rows are normalised, the dot product is the cosine
+ * similarity.
+ */
+public interface EmbeddingMatrix {
+
+    int size();
+
+    int dimensions();
+
+    long id(int ordinal);
+
+    /**
+     * Dot product of a unit-length query with row {@code ordinal}.
+     */
+    float dot(float[] query, int ordinal);
+
+    float dot(int first, int second);
+
+    /**
+     * Copy of row {@code ordinal}.
+     */
+    float[] vector(int ordinal);
+}
@@ -0,0 +1,135 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * On-disk format of an {@link EmbeddingMatrix}. All values are little-endian:
+ *
+ * <pre>
+ * offset  size            content
+ * 0       8               magic "GRETLEMB"
+ * 8       4               format version (1)
+ * 12      4               dimensions
+ * 16      4               row count n
+ * 20      4               reserved
+ * 24      8               source version, e.g. a corpus fingerprint
+ * 32      32              reserved
+ * 64      8 * n           row ids
+ * aligned to 64 bytes     n * dimensions floats, row-major, unit length
+ * </pre>
+ */
+public final class EmbeddingStoreFile {
+
+    private static final byte[] MAGIC = "GRETLEMB".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ALIGNMENT = 64;
+
+    private EmbeddingStoreFile() {
+    }
+
+    /**
+     * Normalises the rows and writes them to {@code file}. The file is written next to the target and moved into
+     * place, so readers never see a partial file.
+     */
+    public static void write(Path file, long sourceVersion, long[] ids, List<float[]> rows, int dimensions)
+            throws IOException {
+        if (ids.length != rows.size()) {
+            throw new IllegalArgumentException("Got " + ids.length + " ids for " + rows.size() + " rows");
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(FORMAT_VERSION).putInt(dimensions).putInt(ids.length).putInt(0)
+                    .putLong(sourceVersion);
+            header.clear();
+            writeFully(channel, header);
+
+            ByteBuffer idBuffer = ByteBuffer.allocate(Long.BYTES * ids.length).order(ByteOrder.LITTLE_ENDIAN);
+            idBuffer.asLongBuffer().put(ids);
+            writeFully(channel, idBuffer);
+            writeFully(channel, ByteBuffer.allocate((int) (vectorOffset(ids.length) - channel.position())));
+
+            ByteBuffer row = ByteBuffer.allocate(Float.BYTES * dimensions).order(ByteOrder.LITTLE_ENDIAN);
+            for (int ordinal = 0; ordinal < rows.size(); ordinal++) {
+                float[] vector = rows.get(ordinal);
+                if (vector.length != dimensions) {
+                    throw new IllegalArgumentException(
+                            "Row " + ids[ordinal] + " has " + vector.length + " dimensions, expected " + dimensions);
+                }
+                row.clear();
+                row.asFloatBuffer().put(VectorMath.normalize(vector));
+                writeFully(channel, row);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps {@code file} read-only. The mapping stays valid until the matrix becomes unreachable, even if the file is
+     * replaced in the meantime.
+     */
+    public static MappedEmbeddingMatrix open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException(file + " is not an embedding store");
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException(file + " exceeds the 2 GiB that can be mapped as one buffer");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[MAGIC.length];
+            mapped.get(0, magic);
+            int version = mapped.getInt(8);
+            if (!Arrays.equals(magic, MAGIC) || version != FORMAT_VERSION) {
+                throw new IOException(file + " is not an embedding store of format version " + FORMAT_VERSION);
+            }
+            int dimensions = mapped.getInt(12);
+            int count = mapped.getInt(16);
+            long sourceVersion = mapped.getLong(24);
+            long expectedSize = vectorOffset(count) + (long) Float.BYTES * count * dimensions;
+            if (dimensions <= 0 || count < 0 || fileSize != expectedSize) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+
+            long[] ids = new long[count];
+            mapped.slice(HEADER_SIZE, Long.BYTES * count).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(ids);
+            int offset = (int) vectorOffset(count);
+            return new MappedEmbeddingMatrix(ids,
+                    mapped.slice(offset, (int) fileSize - offset).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(),
+                    dimensions, sourceVersion);
+        }
+    }
+
+    private static long vectorOffset(int count) {
+        long end = HEADER_SIZE + (long) Long.BYTES * count;
+        return (end + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
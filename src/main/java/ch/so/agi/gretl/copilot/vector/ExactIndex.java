@@ -0,0 +1,60 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brute-force search over all rows. Serves as the reference for measuring the recall of approximate indexes and,
+ * being fast enough for corpora of a few ten thousand rows, as an exact search mode of its own.
+ */
+public final class ExactIndex implements VectorIndex {
+
+    private final EmbeddingMatrix vectors;
+
+    public ExactIndex(EmbeddingMatrix vectors) {
+        this.vectors = vectors;
+    }
+
+    @Override
+    public List<VectorHit> search(float[] query, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        ScoredHeap best = BlockScan.topK(vectors.size(), k, ordinal -> vectors.dot(normalized, ordinal));
+        return toHits(vectors, best);
+    }
+
+    /**
+     * Like {@link #search(float[], int)}, but scans only the rows with the given ordinals.
+     */
+    public List<VectorHit> search(float[] query, int k, int[] ordinals) {
+        if (k <= 0 || ordinals.length == 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        ScoredHeap best = BlockScan.topK(ordinals.length, k, index -> vectors.dot(normalized, ordinals[index]));
+        float[] scores = new float[best.size()];
+        int[] positions = best.drainDescending(scores);
+        List<VectorHit> hits = new ArrayList<>(positions.length);
+        for (int index = 0; index < positions.length; index++) {
+            hits.add(new VectorHit(vectors.id(ordinals[positions[index]]), scores[index]));
+        }
+        return hits;
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    static List<VectorHit> toHits(EmbeddingMatrix vectors, ScoredHeap best) {
+        float[] scores = new float[best.size()];
+        int[] ordinals = best.drainDescending(scores);
+        List<VectorHit> hits = new ArrayList<>(ordinals.length);
+        for (int index = 0; index < ordinals.length; index++) {
+            hits.add(new VectorHit(vectors.id(ordinals[index]), scores[index]));
+        }
+        return hits;
+    }
+}
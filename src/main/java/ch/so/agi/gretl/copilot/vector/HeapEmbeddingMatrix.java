@@ -0,0 +1,70 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.List;
+
+/**
+ * {@link EmbeddingMatrix} backed by one contiguous row-major {@code float[]} on the heap.
+ */
+public final class HeapEmbeddingMatrix implements EmbeddingMatrix {
+
+    private final long[] ids;
+    private final float[] data;
+    private final int dimensions;
+
+    private HeapEmbeddingMatrix(long[] ids, float[] data, int dimensions) {
+        this.ids = ids;
+        this.data = data;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Copies and normalises the rows. All rows must have {@code dimensions} entries.
+     */
+    public static HeapEmbeddingMatrix normalized(long[] ids, List<float[]> rows, int dimensions) {
+        if (ids.length != rows.size()) {
+            throw new IllegalArgumentException("Got " + ids.length + " ids for " + rows.size() + " rows");
+        }
+        float[] data = new float[rows.size() * dimensions];
+        for (int ordinal = 0; ordinal < rows.size(); ordinal++) {
+            float[] row = rows.get(ordinal);
+            if (row.length != dimensions) {
+                throw new IllegalArgumentException(
+                        "Row " + ids[ordinal] + " has " + row.length + " dimensions, expected " + dimensions);
+            }
+            System.arraycopy(VectorMath.normalize(row), 0, data, ordinal * dimensions, dimensions);
+        }
+        return new HeapEmbeddingMatrix(ids.clone(), data, dimensions);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public long id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    @Override
+    public float dot(float[] query, int ordinal) {
+        return VectorMath.dot(query, 0, data, ordinal * dimensions, dimensions);
+    }
+
+    @Override
+    public float dot(int first, int second) {
+        return VectorMath.dot(data, first * dimensions, data, second * dimensions, dimensions);
+    }
+
+    @Override
+    public float[] vector(int ordinal) {
+        float[] vector = new float[dimensions];
+        System.arraycopy(data, ordinal * dimensions, vector, 0, dimensions);
+        return vector;
+    }
+}
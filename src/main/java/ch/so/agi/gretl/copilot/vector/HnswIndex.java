@@ -0,0 +1,247 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over an {@link EmbeddingMatrix}. Built once,
+ * single-threaded, and read-only afterwards, so searches need no synchronisation.
+ *
+ * <p>
+ * {@code m} is the number of neighbours per node and layer (twice that on layer 0), {@code efConstruction} the
+ * candidate list size while inserting and {@code efSearch} the one while searching. Larger values trade speed for
+ * recall.
+ */
+public final class HnswIndex implements VectorIndex {
+
+    private static final int MAX_LEVEL = 16;
+
+    private final EmbeddingMatrix vectors;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    /** {@code links[node][level]} holds the neighbour count at index 0 followed by the neighbour ordinals. */
+    private final int[][][] links;
+    private final int efSearch;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private HnswIndex(EmbeddingMatrix vectors, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.links = new int[vectors.size()][][];
+    }
+
+    public static HnswIndex build(EmbeddingMatrix vectors, int m, int efConstruction, int efSearch, long seed) {
+        HnswIndex index = new HnswIndex(vectors, m, efConstruction, efSearch);
+        Random random = new Random(seed);
+        for (int node = 0; node < vectors.size(); node++) {
+            index.insert(node, index.randomLevel(random));
+        }
+        return index;
+    }
+
+    @Override
+    public List<VectorHit> search(float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * Searches with a candidate list size other than the configured {@code efSearch}, e.g. while tuning recall.
+     */
+    public List<VectorHit> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        Similarity similarity = ordinal -> vectors.dot(normalized, ordinal);
+
+        int current = greedyDescend(similarity, entryPoint, maxLevel, 0);
+        ScoredHeap results = searchLayer(similarity, current, Math.max(ef, k), 0);
+        while (results.size() > k) {
+            results.pop();
+        }
+        float[] scores = new float[results.size()];
+        int[] ordinals = results.drainDescending(scores);
+        List<VectorHit> hits = new ArrayList<>(ordinals.length);
+        for (int index = 0; index < ordinals.length; index++) {
+            hits.add(new VectorHit(vectors.id(ordinals[index]), scores[index]));
+        }
+        return hits;
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    private int randomLevel(Random random) {
+        double uniform = 1.0 - random.nextDouble();
+        return Math.min(MAX_LEVEL, (int) Math.floor(-Math.log(uniform) * levelMultiplier));
+    }
+
+    private void insert(int node, int level) {
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[capacity(layer) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        Similarity similarity = other -> vectors.dot(node, other);
+        int current = greedyDescend(similarity, entryPoint, maxLevel, level + 1);
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            ScoredHeap found = searchLayer(similarity, current, efConstruction, layer);
+            float[] scores = new float[found.size()];
+            int[] candidates = found.drainDescending(scores);
+            current = candidates[0];
+
+            int[] selected = selectNeighbours(candidates, scores, m);
+            setNeighbours(node, layer, selected, selected.length);
+            for (int neighbour : selected) {
+                link(neighbour, node, layer);
+            }
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Walks greedily towards the query on every layer from {@code fromLevel} down to {@code toLevel}.
+     */
+    private int greedyDescend(Similarity similarity, int start, int fromLevel, int toLevel) {
+        int current = start;
+        float currentScore = similarity.of(current);
+        for (int layer = fromLevel; layer >= toLevel; layer--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                int[] neighbours = links[current][layer];
+                for (int index = 1; index <= neighbours[0]; index++) {
+                    float score = similarity.of(neighbours[index]);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = neighbours[index];
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one layer. Returns a min-heap with the {@code ef} most similar nodes found.
+     */
+    private ScoredHeap searchLayer(Similarity similarity, int entry, int ef, int layer) {
+        BitSet visited = new BitSet(vectors.size());
+        ScoredHeap candidates = ScoredHeap.max(ef * 2);
+        ScoredHeap results = ScoredHeap.min(ef + 1);
+
+        float entryScore = similarity.of(entry);
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        results.push(entry, entryScore);
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] neighbours = links[candidate][layer];
+            for (int index = 1; index <= neighbours[0]; index++) {
+                int neighbour = neighbours[index];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = similarity.of(neighbour);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbour, score);
+                    results.pushBounded(neighbour, score, ef);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Neighbour selection heuristic: a candidate is kept only if it is closer to the base node than to every
+     * neighbour selected so far, which spreads the links in different directions. Remaining slots are filled with
+     * the closest pruned candidates. {@code candidates} must be sorted by descending score.
+     */
+    private int[] selectNeighbours(int[] candidates, float[] scores, int limit) {
+        if (candidates.length <= limit) {
+            return candidates;
+        }
+        int[] selected = new int[limit];
+        int count = 0;
+        boolean[] taken = new boolean[candidates.length];
+        for (int index = 0; index < candidates.length && count < limit; index++) {
+            boolean diverse = true;
+            for (int other = 0; other < count && diverse; other++) {
+                diverse = vectors.dot(candidates[index], selected[other]) < scores[index];
+            }
+            if (diverse) {
+                selected[count++] = candidates[index];
+                taken[index] = true;
+            }
+        }
+        for (int index = 0; index < candidates.length && count < limit; index++) {
+            if (!taken[index]) {
+                selected[count++] = candidates[index];
+            }
+        }
+        return selected;
+    }
+
+    private void link(int node, int neighbour, int layer) {
+        int[] neighbours = links[node][layer];
+        int count = neighbours[0];
+        if (count < capacity(layer)) {
+            neighbours[count + 1] = neighbour;
+            neighbours[0] = count + 1;
+            return;
+        }
+
+        // Full: re-select among the existing neighbours and the new one.
+        ScoredHeap ranked = ScoredHeap.max(count + 1);
+        for (int index = 1; index <= count; index++) {
+            ranked.push(neighbours[index], vectors.dot(node, neighbours[index]));
+        }
+        ranked.push(neighbour, vectors.dot(node, neighbour));
+        float[] scores = new float[ranked.size()];
+        int[] candidates = ranked.drainDescending(scores);
+        int[] selected = selectNeighbours(candidates, scores, capacity(layer));
+        setNeighbours(node, layer, selected, selected.length);
+    }
+
+    private void setNeighbours(int node, int layer, int[] neighbours, int count) {
+        int[] target = links[node][layer];
+        System.arraycopy(neighbours, 0, target, 1, count);
+        target[0] = count;
+    }
+
+    private int capacity(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    @FunctionalInterface
+    private interface Similarity {
+        float of(int ordinal);
+    }
+}
@@ -0,0 +1,80 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.nio.FloatBuffer;
+
+/**
+ * {@link EmbeddingMatrix} over a memory-mapped {@link EmbeddingStoreFile}. The vectors stay off-heap in the page
+ * cache; only the id table is copied to the heap.
+ */
+public final class MappedEmbeddingMatrix implements EmbeddingMatrix {
+
+    private final long[] ids;
+    private final FloatBuffer data;
+    private final int dimensions;
+    private final long sourceVersion;
+    private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+
+    MappedEmbeddingMatrix(long[] ids, FloatBuffer data, int dimensions, long sourceVersion) {
+        this.ids = ids;
+        this.data = data;
+        this.dimensions = dimensions;
+        this.sourceVersion = sourceVersion;
+    }
+
+    /**
+     * The source version the file was written for.
+     */
+    public long sourceVersion() {
+        return sourceVersion;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public long id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    @Override
+    public float dot(float[] query, int ordinal) {
+        float[] row = scratch();
+        data.get(ordinal * dimensions, row, 0, dimensions);
+        return VectorMath.dot(query, 0, row, 0, dimensions);
+    }
+
+    @Override
+    public float dot(int first, int second) {
+        float[] rows = scratch();
+        data.get(first * dimensions, rows, 0, dimensions);
+        data.get(second * dimensions, rows, dimensions, dimensions);
+        return VectorMath.dot(rows, 0, rows, dimensions, dimensions);
+    }
+
+    /**
+     * Per-thread heap buffer for two rows. The Vector API cannot load from a {@code FloatBuffer} on Java 21, so rows
+     * are bulk-copied out of the mapping before the dot product.
+     */
+    private float[] scratch() {
+        float[] buffer = scratch.get();
+        if (buffer.length < 2 * dimensions) {
+            buffer = new float[2 * dimensions];
+            scratch.set(buffer);
+        }
+        return buffer;
+    }
+
+    @Override
+    public float[] vector(int ordinal) {
+        float[] vector = new float[dimensions];
+        data.get(ordinal * dimensions, vector);
+        return vector;
+    }
+}
@@ -0,0 +1,95 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Two-stage search for Matryoshka embeddings such as text-embedding-3: the first stage searches the leading
+ * {@code prefixDimensions} of every row, re-normalised, for {@code k * rescoreMultiplier} candidates, which are then
+ * rescored with the full vectors. The first-stage index works on ordinals: its rows carry the ordinal of the full
+ * row as id.
+ */
+public final class PrefixIndex implements VectorIndex {
+
+    private final EmbeddingMatrix vectors;
+    private final EmbeddingMatrix prefixes;
+    private final VectorIndex firstStage;
+    private final int prefixDimensions;
+    private final int rescoreMultiplier;
+
+    private PrefixIndex(EmbeddingMatrix vectors, EmbeddingMatrix prefixes, VectorIndex firstStage,
+            int rescoreMultiplier) {
+        this.vectors = vectors;
+        this.prefixes = prefixes;
+        this.firstStage = firstStage;
+        this.prefixDimensions = prefixes.dimensions();
+        this.rescoreMultiplier = Math.max(1, rescoreMultiplier);
+    }
+
+    /**
+     * Builds the first stage with {@code firstStage} over the truncated rows of {@code vectors}.
+     */
+    public static PrefixIndex build(EmbeddingMatrix vectors, int prefixDimensions, int rescoreMultiplier,
+            Function<EmbeddingMatrix, VectorIndex> firstStage) {
+        if (prefixDimensions <= 0 || prefixDimensions >= vectors.dimensions()) {
+            throw new IllegalArgumentException("Prefix of " + prefixDimensions + " dimensions is not shorter than "
+                    + vectors.dimensions() + " dimensions");
+        }
+        EmbeddingMatrix prefixes = prefixes(vectors, prefixDimensions);
+        return new PrefixIndex(vectors, prefixes, firstStage.apply(prefixes), rescoreMultiplier);
+    }
+
+    @Override
+    public List<VectorHit> search(float[] query, int k) {
+        if (k <= 0 || vectors.size() == 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        float[] prefix = new float[prefixDimensions];
+        System.arraycopy(normalized, 0, prefix, 0, prefixDimensions);
+        int shortlist = (int) Math.min(vectors.size(), (long) k * rescoreMultiplier);
+
+        ScoredHeap best = ScoredHeap.min(k + 1);
+        for (VectorHit hit : firstStage.search(prefix, shortlist)) {
+            int ordinal = (int) hit.id();
+            best.pushBounded(ordinal, vectors.dot(normalized, ordinal), k);
+        }
+        return ExactIndex.toHits(vectors, best);
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    public int prefixDimensions() {
+        return prefixDimensions;
+    }
+
+    /**
+     * The first stage, searched with the normalised query prefix; its hit ids are ordinals of the full rows.
+     */
+    public VectorIndex firstStage() {
+        return firstStage;
+    }
+
+    /**
+     * Heap bytes taken by the truncated rows.
+     */
+    public long prefixBytes() {
+        return (long) prefixes.size() * prefixDimensions * Float.BYTES;
+    }
+
+    private static EmbeddingMatrix prefixes(EmbeddingMatrix vectors, int prefixDimensions) {
+        long[] ordinals = new long[vectors.size()];
+        List<float[]> rows = new ArrayList<>(vectors.size());
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            ordinals[ordinal] = ordinal;
+            float[] prefix = new float[prefixDimensions];
+            System.arraycopy(vectors.vector(ordinal), 0, prefix, 0, prefixDimensions);
+            rows.add(prefix);
+        }
+        return HeapEmbeddingMatrix.normalized(ordinals, rows, prefixDimensions);
+    }
+}
@@ -0,0 +1,13 @@
+package ch.so.agi.gretl.copilot.vector;
+
+/**
+ * Compact vector codes for the first stage of {@link QuantizedIndex}.
+ */
+public enum Quantization {
+    /** Full-precision floats only. */
+    NONE,
+    /** One signed byte per dimension. */
+    INT8,
+    /** One sign bit per dimension, compared by Hamming distance. */
+    BINARY
+}
@@ -0,0 +1,147 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.List;
+
+/**
+ * Two-stage search: a scan over compact codes picks {@code k * rescoreMultiplier} candidates, which are then
+ * rescored with the full-precision vectors of the underlying {@link EmbeddingMatrix}. Only the codes are held on
+ * the heap; the full vectors are read for the shortlist only.
+ *
+ * <ul>
+ * <li>{@link Quantization#INT8}: one signed byte per dimension with a per-dimension scale, a quarter of the float
+ * size.</li>
+ * <li>{@link Quantization#BINARY}: the sign bit per dimension compared by Hamming distance, 1/32 of the float
+ * size.</li>
+ * </ul>
+ */
+public final class QuantizedIndex implements VectorIndex {
+
+    private final EmbeddingMatrix vectors;
+    private final Quantization quantization;
+    private final int rescoreMultiplier;
+    private final int dimensions;
+    private final byte[] int8Codes;
+    private final float[] int8Scales;
+    private final long[] binaryCodes;
+    private final int words;
+
+    private QuantizedIndex(EmbeddingMatrix vectors, Quantization quantization, int rescoreMultiplier) {
+        if (quantization == Quantization.NONE) {
+            throw new IllegalArgumentException("Quantization NONE needs no quantized index");
+        }
+        this.vectors = vectors;
+        this.quantization = quantization;
+        this.rescoreMultiplier = Math.max(1, rescoreMultiplier);
+        this.dimensions = vectors.dimensions();
+        this.words = (dimensions + Long.SIZE - 1) / Long.SIZE;
+        if (quantization == Quantization.INT8) {
+            this.int8Scales = int8Scales(vectors);
+            this.int8Codes = new byte[vectors.size() * dimensions];
+            this.binaryCodes = null;
+        } else {
+            this.int8Scales = null;
+            this.int8Codes = null;
+            this.binaryCodes = new long[vectors.size() * words];
+        }
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            encode(ordinal, vectors.vector(ordinal));
+        }
+    }
+
+    public static QuantizedIndex build(EmbeddingMatrix vectors, Quantization quantization, int rescoreMultiplier) {
+        return new QuantizedIndex(vectors, quantization, rescoreMultiplier);
+    }
+
+    @Override
+    public List<VectorHit> search(float[] query, int k) {
+        if (k <= 0 || vectors.size() == 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        int shortlist = (int) Math.min(vectors.size(), (long) k * rescoreMultiplier);
+
+        ScoredHeap candidates;
+        if (quantization == Quantization.INT8) {
+            float[] scaledQuery = new float[dimensions];
+            for (int index = 0; index < dimensions; index++) {
+                scaledQuery[index] = normalized[index] * int8Scales[index];
+            }
+            candidates = BlockScan.topK(vectors.size(), shortlist, ordinal -> int8Score(scaledQuery, ordinal));
+        } else {
+            long[] queryBits = new long[words];
+            setSignBits(normalized, queryBits, 0);
+            candidates = BlockScan.topK(vectors.size(), shortlist, ordinal -> binaryScore(queryBits, ordinal));
+        }
+
+        ScoredHeap best = ScoredHeap.min(k + 1);
+        while (!candidates.isEmpty()) {
+            int ordinal = candidates.pop();
+            best.pushBounded(ordinal, vectors.dot(normalized, ordinal), k);
+        }
+        return ExactIndex.toHits(vectors, best);
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    /**
+     * Heap bytes taken by the codes.
+     */
+    public long codeBytes() {
+        return quantization == Quantization.INT8 ? int8Codes.length : (long) binaryCodes.length * Long.BYTES;
+    }
+
+    private float int8Score(float[] scaledQuery, int ordinal) {
+        return VectorMath.dotInt8(scaledQuery, int8Codes, ordinal * dimensions, dimensions);
+    }
+
+    private float binaryScore(long[] queryBits, int ordinal) {
+        int base = ordinal * words;
+        int distance = 0;
+        for (int word = 0; word < words; word++) {
+            distance += Long.bitCount(queryBits[word] ^ binaryCodes[base + word]);
+        }
+        // Hamming distance mapped to an estimate of the cosine similarity.
+        return 1f - 2f * distance / dimensions;
+    }
+
+    private void encode(int ordinal, float[] vector) {
+        if (quantization == Quantization.INT8) {
+            int base = ordinal * dimensions;
+            for (int index = 0; index < dimensions; index++) {
+                float scale = int8Scales[index];
+                int code = scale == 0f ? 0 : Math.round(vector[index] / scale);
+                int8Codes[base + index] = (byte) Math.max(-127, Math.min(127, code));
+            }
+        } else {
+            setSignBits(vector, binaryCodes, ordinal * words);
+        }
+    }
+
+    private void setSignBits(float[] vector, long[] target, int offset) {
+        for (int index = 0; index < dimensions; index++) {
+            if (vector[index] > 0f) {
+                target[offset + index / Long.SIZE] |= 1L << (index % Long.SIZE);
+            }
+        }
+    }
+
+    /**
+     * Per-dimension scale mapping the largest absolute value of that dimension to 127.
+     */
+    private static float[] int8Scales(EmbeddingMatrix vectors) {
+        float[] max = new float[vectors.dimensions()];
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            float[] vector = vectors.vector(ordinal);
+            for (int index = 0; index < max.length; index++) {
+                max[index] = Math.max(max[index], Math.abs(vector[index]));
+            }
+        }
+        for (int index = 0; index < max.length; index++) {
+            max[index] /= 127f;
+        }
+        return max;
+    }
+}
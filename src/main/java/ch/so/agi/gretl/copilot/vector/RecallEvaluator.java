@@ -0,0 +1,44 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures recall@k of an approximate index against exact search.
+ */
+public final class RecallEvaluator {
+
+    private RecallEvaluator() {
+    }
+
+    /**
+     * Uses {@code sampleSize} randomly chosen rows of {@code vectors} as queries and returns the mean fraction of the
+     * exact top {@code k} that the approximate index also returned.
+     */
+    public static double recallAtK(VectorIndex approximate, VectorIndex exact, EmbeddingMatrix vectors,
+            int sampleSize, int k, long seed) {
+        if (vectors.size() == 0 || sampleSize <= 0 || k <= 0) {
+            return 1.0;
+        }
+        Random random = new Random(seed);
+        double total = 0.0;
+        int queries = Math.min(sampleSize, vectors.size());
+        for (int sample = 0; sample < queries; sample++) {
+            float[] query = vectors.vector(random.nextInt(vectors.size()));
+            total += recall(approximate.search(query, k), exact.search(query, k));
+        }
+        return total / queries;
+    }
+
+    static double recall(List<VectorHit> approximate, List<VectorHit> exact) {
+        if (exact.isEmpty()) {
+            return 1.0;
+        }
+        Set<Long> expected = new HashSet<>();
+        exact.forEach(hit -> expected.add(hit.id()));
+        long found = approximate.stream().filter(hit -> expected.contains(hit.id())).count();
+        return (double) found / expected.size();
+    }
+}
@@ -0,0 +1,134 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (ordinal, score) pairs on primitive arrays. Depending on {@code max} the best or the worst score is
+ * on top.
+ */
+final class ScoredHeap {
+
+    private final boolean max;
+    private int[] ordinals;
+    private float[] scores;
+    private int size;
+
+    ScoredHeap(int capacity, boolean max) {
+        this.max = max;
+        this.ordinals = new int[Math.max(capacity, 4)];
+        this.scores = new float[Math.max(capacity, 4)];
+    }
+
+    static ScoredHeap min(int capacity) {
+        return new ScoredHeap(capacity, false);
+    }
+
+    static ScoredHeap max(int capacity) {
+        return new ScoredHeap(capacity, true);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int topOrdinal() {
+        return ordinals[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    void push(int ordinal, float score) {
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            ordinals[index] = ordinals[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ordinals[index] = ordinal;
+        scores[index] = score;
+    }
+
+    /**
+     * Pushes the pair and drops the worst entry if the heap now holds more than {@code limit} entries. Only valid on
+     * a min-heap.
+     */
+    void pushBounded(int ordinal, float score, int limit) {
+        if (size < limit) {
+            push(ordinal, score);
+        } else if (score > scores[0]) {
+            pop();
+            push(ordinal, score);
+        }
+    }
+
+    int pop() {
+        int top = ordinals[0];
+        size--;
+        if (size > 0) {
+            int lastOrdinal = ordinals[size];
+            float lastScore = scores[size];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!above(scores[child], lastScore)) {
+                    break;
+                }
+                ordinals[index] = ordinals[child];
+                scores[index] = scores[child];
+                index = child;
+            }
+            ordinals[index] = lastOrdinal;
+            scores[index] = lastScore;
+        }
+        return top;
+    }
+
+    /**
+     * Empties the heap and returns its ordinals, best score first. Writes the matching scores to {@code sortedScores}
+     * if it is not {@code null}.
+     */
+    int[] drainDescending(float[] sortedScores) {
+        int count = size;
+        int[] sorted = new int[count];
+        for (int index = count - 1; index >= 0; index--) {
+            if (max) {
+                // A max-heap pops the best first.
+                int target = count - 1 - index;
+                if (sortedScores != null) {
+                    sortedScores[target] = scores[0];
+                }
+                sorted[target] = pop();
+            } else {
+                if (sortedScores != null) {
+                    sortedScores[index] = scores[0];
+                }
+                sorted[index] = pop();
+            }
+        }
+        return sorted;
+    }
+
+    private boolean above(float first, float second) {
+        return max ? first > second : first < second;
+    }
+}
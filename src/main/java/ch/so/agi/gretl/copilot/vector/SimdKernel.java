@@ -0,0 +1,77 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dot product on the widest float vectors the CPU supports, with two independent FMA accumulators to hide the FMA
+ * latency. Only instantiated by {@link VectorMath} when {@code jdk.incubator.vector} is available.
+ */
+final class SimdKernel implements VectorMath.Kernel {
+
+    private final VectorSpecies<Float> species;
+
+    /**
+     * Bytes covering at least the lanes of {@link #species}, but no narrower than 64 bits, the smallest byte shape.
+     * Each byte vector is widened to {@link #parts} float vectors.
+     */
+    private final VectorSpecies<Byte> byteSpecies;
+    private final int parts;
+
+    SimdKernel() {
+        this(FloatVector.SPECIES_PREFERRED);
+    }
+
+    SimdKernel(VectorSpecies<Float> species) {
+        this.species = species;
+        int byteBits = Math.max(ByteVector.SPECIES_64.vectorBitSize(), species.length() * Byte.SIZE);
+        this.byteSpecies = VectorSpecies.of(byte.class, VectorShape.forBitSize(byteBits));
+        this.parts = byteSpecies.length() / species.length();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = species.length();
+        FloatVector first = FloatVector.zero(species);
+        FloatVector second = FloatVector.zero(species);
+        int index = 0;
+        for (; index + 2 * step <= length; index += 2 * step) {
+            first = FloatVector.fromArray(species, a, aOffset + index)
+                    .fma(FloatVector.fromArray(species, b, bOffset + index), first);
+            second = FloatVector.fromArray(species, a, aOffset + index + step)
+                    .fma(FloatVector.fromArray(species, b, bOffset + index + step), second);
+        }
+        for (; index + step <= length; index += step) {
+            first = FloatVector.fromArray(species, a, aOffset + index)
+                    .fma(FloatVector.fromArray(species, b, bOffset + index), first);
+        }
+        float sum = first.add(second).reduceLanes(VectorOperators.ADD);
+        for (; index < length; index++) {
+            sum += a[aOffset + index] * b[bOffset + index];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotInt8(float[] query, byte[] codes, int codesOffset, int length) {
+        int step = byteSpecies.length();
+        int floatStep = species.length();
+        FloatVector sum = FloatVector.zero(species);
+        int index = 0;
+        for (; index + step <= length; index += step) {
+            ByteVector bytes = ByteVector.fromArray(byteSpecies, codes, codesOffset + index);
+            for (int part = 0; part < parts; part++) {
+                FloatVector widened = (FloatVector) bytes.convertShape(VectorOperators.B2F, species, part);
+                sum = FloatVector.fromArray(species, query, index + part * floatStep).fma(widened, sum);
+            }
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; index < length; index++) {
+            result += query[index] * codes[codesOffset + index];
+        }
+        return result;
+    }
+}
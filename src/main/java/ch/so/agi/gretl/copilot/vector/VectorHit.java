@@ -0,0 +1,7 @@
+package ch.so.agi.gretl.copilot.vector;
+
+/**
+ * Result of a {@link VectorIndex} search: the row id and its cosine similarity to the query.
+ */
+public record VectorHit(long id, float score) {
+}
@@ -0,0 +1,16 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.util.List;
+
+/**
+ * Nearest-neighbour search by cosine similarity.
+ */
+public interface VectorIndex {
+
+    /**
+     * Returns at most {@code k} hits, most similar first. The query does not need to be normalised.
+     */
+    List<VectorHit> search(float[] query, int k);
+
+    int size();
+}
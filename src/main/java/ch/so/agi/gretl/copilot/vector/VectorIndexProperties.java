@@ -0,0 +1,81 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gretl.copilot.vector")
+public class VectorIndexProperties {
+    private Path storeDirectory = Path.of("data", "embeddings");
+    private int m = 16;
+    private int efConstruction = 200;
+    private int efSearch = 100;
+    private Quantization quantization = Quantization.NONE;
+    private int rescoreMultiplier = 8;
+    private int recallSampleSize = 100;
+    private int recallK = 10;
+
+    public Path getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    public void setStoreDirectory(Path storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public void setM(int m) {
+        this.m = m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public void setEfConstruction(int efConstruction) {
+        this.efConstruction = efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    public Quantization getQuantization() {
+        return quantization;
+    }
+
+    public void setQuantization(Quantization quantization) {
+        this.quantization = quantization;
+    }
+
+    public int getRescoreMultiplier() {
+        return rescoreMultiplier;
+    }
+
+    public void setRescoreMultiplier(int rescoreMultiplier) {
+        this.rescoreMultiplier = rescoreMultiplier;
+    }
+
+    public int getRecallSampleSize() {
+        return recallSampleSize;
+    }
+
+    public void setRecallSampleSize(int recallSampleSize) {
+        this.recallSampleSize = recallSampleSize;
+    }
+
+    public int getRecallK() {
+        return recallK;
+    }
+
+    public void setRecallK(int recallK) {
+        this.recallK = recallK;
+    }
+}
@@ -0,0 +1,105 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Vector kernels shared by the indexes. Dot products use the SIMD kernel of the Java Vector API when the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}, otherwise a scalar loop. The system property
+ * {@code gretl.copilot.vector.scalar=true} forces the scalar loop.
+ */
+public final class VectorMath {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final String SIMD_KERNEL = "ch.so.agi.gretl.copilot.vector.SimdKernel";
+
+    private static final Kernel SCALAR = new ScalarKernel();
+
+    private static final Kernel KERNEL = loadKernel();
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Dot product of a float query with {@code length} signed byte codes starting at {@code codesOffset}.
+     */
+    public static float dotInt8(float[] query, byte[] codes, int codesOffset, int length) {
+        return KERNEL.dotInt8(query, codes, codesOffset, length);
+    }
+
+    public static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int index = 0; index < length; index++) {
+            sum += a[aOffset + index] * b[bOffset + index];
+        }
+        return sum;
+    }
+
+    /**
+     * {@code true} if {@link #dot} runs on the Vector API.
+     */
+    public static boolean isSimd() {
+        return KERNEL != SCALAR;
+    }
+
+    /**
+     * Returns a unit-length copy of {@code vector}. A zero vector is returned unchanged.
+     */
+    public static float[] normalize(float[] vector) {
+        float[] normalized = vector.clone();
+        double norm = Math.sqrt(dot(vector, 0, vector, 0, vector.length));
+        if (norm > 0.0) {
+            for (int index = 0; index < normalized.length; index++) {
+                normalized[index] = (float) (normalized[index] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private static Kernel loadKernel() {
+        if (Boolean.getBoolean("gretl.copilot.vector.scalar")) {
+            log.info("Using scalar vector kernel (forced)");
+            return SCALAR;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("Using scalar vector kernel; start the JVM with --add-modules jdk.incubator.vector for SIMD");
+            return SCALAR;
+        }
+        try {
+            // Loaded reflectively so this class still links when the incubator module is missing.
+            Kernel kernel = (Kernel) Class.forName(SIMD_KERNEL).getDeclaredConstructor().newInstance();
+            log.info("Using SIMD vector kernel");
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            log.warn("SIMD vector kernel unavailable, using scalar kernel", ex);
+            return SCALAR;
+        }
+    }
+
+    interface Kernel {
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+        float dotInt8(float[] query, byte[] codes, int codesOffset, int length);
+    }
+
+    private static final class ScalarKernel implements Kernel {
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return scalarDot(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public float dotInt8(float[] query, byte[] codes, int codesOffset, int length) {
+            float sum = 0f;
+            for (int index = 0; index < length; index++) {
+                sum += query[index] * codes[codesOffset + index];
+            }
+            return sum;
+        }
+    }
+}
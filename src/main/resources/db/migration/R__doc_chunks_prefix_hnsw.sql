@@ -0,0 +1,21 @@
+-- HNSW index for the first stage of gretl.copilot.retrieval.prefix-dimensions, passed in as a placeholder. HNSW is
+-- limited to 2000 dimensions and the expression must match the query. Flyway reapplies this migration when the
+-- value changes; indexes for other prefix lengths are dropped.
+DO $$
+DECLARE
+  dimensions integer := ${prefix-dimensions};
+  stale record;
+BEGIN
+  FOR stale IN
+    SELECT indexname FROM pg_indexes
+    WHERE schemaname = 'rag' AND indexname LIKE 'idx\_doc\_chunks\_embedding\_prefix\_%'
+      AND indexname <> 'idx_doc_chunks_embedding_prefix_' || dimensions
+  LOOP
+    EXECUTE format('DROP INDEX rag.%I', stale.indexname);
+  END LOOP;
+
+  IF dimensions > 0 AND dimensions <= 2000 THEN
+    EXECUTE format('CREATE INDEX IF NOT EXISTS idx_doc_chunks_embedding_prefix_%1$s ON rag.doc_chunks '
+        || 'USING hnsw ((subvector(embedding, 1, %1$s)::vector(%1$s)) vector_cosine_ops)', dimensions);
+  END IF;
+END $$;
@@ -0,0 +1,47 @@
+-- Schema of initdb/01_init.sql at text-embedding-3-large size. Idempotent, so databases created by initdb are
+-- adopted as they are.
+CREATE EXTENSION IF NOT EXISTS vector SCHEMA public;
+
+CREATE TABLE IF NOT EXISTS rag.pages (
+  id BIGSERIAL PRIMARY KEY,
+  url TEXT UNIQUE NOT NULL,
+  title TEXT,
+  fetched_at TIMESTAMPTZ DEFAULT now(),
+  raw_md TEXT
+);
+
+CREATE TABLE IF NOT EXISTS rag.doc_chunks (
+  id BIGSERIAL PRIMARY KEY,
+  page_id BIGINT REFERENCES rag.pages(id) ON DELETE CASCADE,
+  task_name TEXT,
+  section_type TEXT,
+  url TEXT,
+  anchor TEXT,
+  heading TEXT,
+  content_text TEXT NOT NULL,
+  content_md TEXT,
+  embedding vector(3072)
+);
+
+CREATE TABLE IF NOT EXISTS rag.task_properties (
+  id BIGSERIAL PRIMARY KEY,
+  task_name TEXT,
+  property_name TEXT,
+  type TEXT,
+  required BOOLEAN,
+  default_value TEXT,
+  description TEXT,
+  enum_values TEXT[]
+);
+
+CREATE TABLE IF NOT EXISTS rag.task_examples (
+  id BIGSERIAL PRIMARY KEY,
+  task_name TEXT,
+  title TEXT,
+  code_md TEXT,
+  explanation TEXT,
+  embedding vector(3072)
+);
+
+CREATE INDEX IF NOT EXISTS idx_doc_chunks_task_section ON rag.doc_chunks (task_name, section_type);
+CREATE INDEX IF NOT EXISTS idx_task_props ON rag.task_properties (task_name, property_name);
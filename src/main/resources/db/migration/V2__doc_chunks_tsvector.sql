@@ -0,0 +1,10 @@
+-- Stored full text vector for the lexical half of the hybrid query. Heading terms get weight A, content terms
+-- weight B, so ts_rank_cd ranks heading matches higher.
+ALTER TABLE rag.doc_chunks
+  ADD COLUMN IF NOT EXISTS content_tsv tsvector
+  GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(heading, '')), 'A')
+    || setweight(to_tsvector('simple', content_text), 'B')
+  ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_doc_chunks_content_tsv ON rag.doc_chunks USING gin (content_tsv);
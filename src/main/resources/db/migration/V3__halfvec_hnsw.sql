@@ -0,0 +1,7 @@
+-- HNSW indexes for cosine distance. vector is limited to 2000 indexed dimensions, halfvec to 4000, so the
+-- 3072-dimension embeddings are indexed as half precision expressions; queries must order by the same expression.
+CREATE INDEX IF NOT EXISTS idx_doc_chunks_embedding_hnsw ON rag.doc_chunks
+  USING hnsw ((embedding::halfvec(3072)) halfvec_cosine_ops);
+
+CREATE INDEX IF NOT EXISTS idx_task_examples_embedding_hnsw ON rag.task_examples
+  USING hnsw ((embedding::halfvec(3072)) halfvec_cosine_ops);
@@ -0,0 +1,33 @@
+-- Revision counter of the corpus, bumped by statement-level triggers whenever the ingester (or anyone else) writes
+-- to the corpus tables, embeddings included. CorpusVersionMonitor polls this single row instead of scanning the
+-- tables.
+CREATE TABLE IF NOT EXISTS rag.corpus_revision (
+  id BOOLEAN PRIMARY KEY DEFAULT true CHECK (id),
+  revision BIGINT NOT NULL DEFAULT 0,
+  changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+INSERT INTO rag.corpus_revision (id) VALUES (true) ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION rag.bump_corpus_revision() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+  UPDATE rag.corpus_revision SET revision = revision + 1, changed_at = clock_timestamp();
+  RETURN NULL;
+END $$;
+
+DROP TRIGGER IF EXISTS trg_pages_corpus_revision ON rag.pages;
+CREATE TRIGGER trg_pages_corpus_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON rag.pages
+  FOR EACH STATEMENT EXECUTE FUNCTION rag.bump_corpus_revision();
+
+DROP TRIGGER IF EXISTS trg_doc_chunks_corpus_revision ON rag.doc_chunks;
+CREATE TRIGGER trg_doc_chunks_corpus_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON rag.doc_chunks
+  FOR EACH STATEMENT EXECUTE FUNCTION rag.bump_corpus_revision();
+
+DROP TRIGGER IF EXISTS trg_task_examples_corpus_revision ON rag.task_examples;
+CREATE TRIGGER trg_task_examples_corpus_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON rag.task_examples
+  FOR EACH STATEMENT EXECUTE FUNCTION rag.bump_corpus_revision();
+
+DROP TRIGGER IF EXISTS trg_task_properties_corpus_revision ON rag.task_properties;
+CREATE TRIGGER trg_task_properties_corpus_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON rag.task_properties
+  FOR EACH STATEMENT EXECUTE FUNCTION rag.bump_corpus_revision();
@@ -0,0 +1,110 @@
+package ch.so.agi.gretl.copilot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.pgvector.PGvector;
+
+/**
+ * One pgvector container per test run with the Flyway migrations applied and a small random corpus, for tests that
+ * check query plans. Tests using it should be annotated with {@code @Testcontainers(disabledWithoutDocker = true)}.
+ */
+public final class PgvectorTestDatabase {
+
+    public static final int DIMENSIONS = 3072;
+
+    /** Leading dimensions the prefix HNSW index of {@code R__doc_chunks_prefix_hnsw.sql} is created for. */
+    public static final int PREFIX_DIMENSIONS = 256;
+
+    private static PostgreSQLContainer<?> container;
+    private static DriverManagerDataSource dataSource;
+
+    private PgvectorTestDatabase() {
+    }
+
+    public static synchronized DriverManagerDataSource dataSource() throws SQLException {
+        if (dataSource == null) {
+            container = new PostgreSQLContainer<>(
+                    DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+            container.start();
+            String url = container.getJdbcUrl() + "&currentSchema=rag,public";
+            dataSource = new DriverManagerDataSource(url, container.getUsername(), container.getPassword());
+            Flyway.configure().dataSource(dataSource).schemas("rag").baselineOnMigrate(true).baselineVersion("0")
+                    .placeholders(Map.of("prefix-dimensions", String.valueOf(PREFIX_DIMENSIONS)))
+                    .load().migrate();
+            insertCorpus(dataSource, 300);
+        }
+        return dataSource;
+    }
+
+    /**
+     * {@code EXPLAIN} output of {@code sql} with index scans preferred, as the planner would choose them on a corpus
+     * larger than the test one.
+     */
+    public static String explain(String sql, StatementBinder binder) throws SQLException {
+        try (Connection connection = dataSource().getConnection()) {
+            connection.createStatement().execute("SET enable_seqscan = off");
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                binder.bind(statement);
+                List<String> lines = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                return String.join("\n", lines);
+            }
+        }
+    }
+
+    public static PGvector randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int index = 0; index < DIMENSIONS; index++) {
+            vector[index] = (float) random.nextGaussian();
+        }
+        return new PGvector(vector);
+    }
+
+    private static void insertCorpus(DriverManagerDataSource dataSource, int rows) throws SQLException {
+        Random random = new Random(42);
+        String[] words = { "csv", "import", "export", "tabelle", "datei", "ili2pg", "interlis", "parameter", "gpkg" };
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement chunks = connection.prepareStatement(
+                        "INSERT INTO rag.doc_chunks (task_name, heading, content_text, embedding) VALUES (?, ?, ?, ?)");
+                PreparedStatement examples = connection.prepareStatement(
+                        "INSERT INTO rag.task_examples (task_name, title, explanation, embedding) VALUES (?, ?, ?, ?)")) {
+            for (int row = 0; row < rows; row++) {
+                String word = words[row % words.length];
+                chunks.setString(1, word);
+                chunks.setString(2, word + " " + row);
+                chunks.setString(3, word + " " + words[random.nextInt(words.length)] + " text " + row);
+                chunks.setObject(4, randomVector(random));
+                chunks.addBatch();
+                examples.setString(1, word);
+                examples.setString(2, word + " " + row);
+                examples.setString(3, "example " + row);
+                examples.setObject(4, randomVector(random));
+                examples.addBatch();
+            }
+            chunks.executeBatch();
+            examples.executeBatch();
+            connection.createStatement().execute("ANALYZE rag.doc_chunks, rag.task_examples");
+        }
+    }
+
+    @FunctionalInterface
+    public interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+}
@@ -1,6 +1,8 @@
 package ch.so.agi.gretl.copilot.chat;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
@@ -36,4 +38,40 @@ class MarkdownRendererTest {
                 () -> assertTrue(html.contains("<li>Unterstützt Listenpunkte</li>"), "List items should be rendered"),
                 () -> assertTrue(html.contains("<code>Code</code>"), "Inline code should be rendered"));
     }
+
+    @Test
+    void streamRendersFinishedBlocksOnceAndOnlyReRendersOpenBlock() {
+        MarkdownStream stream = renderer.openStream();
+
+        MarkdownStream.Update heading = stream.append("## Über");
+        MarkdownStream.Update paragraph = stream.append("blick\n\n| Property | Typ |\n");
+        MarkdownStream.Update table = stream.append("| --- | --- |\n| dataFiles | FileCollection |\n");
+        MarkdownStream.Update finish = stream.finish();
+
+        assertAll(
+                () -> assertEquals("", heading.finishedHtml(), "Open heading must not be final yet"),
+                () -> assertTrue(heading.openHtml().contains("<h2>Über</h2>"), "Open heading should be rendered"),
+                () -> assertTrue(paragraph.finishedHtml().contains("<h2>Überblick</h2>"),
+                        "Heading should become final once the next block starts"),
+                () -> assertTrue(paragraph.openHtml().startsWith("<p>"), "Table header is a paragraph until the delimiter row"),
+                () -> assertEquals("", table.finishedHtml(), "Nothing new is final while the table is open"),
+                () -> assertTrue(table.openHtml().contains("<td>FileCollection</td>"), "Open table should be rendered"),
+                () -> assertTrue(finish.finishedHtml().contains("<table>"), "Finishing finalizes the table"),
+                () -> assertEquals("", finish.openHtml(), "Nothing stays open after finishing"));
+    }
+
+    @Test
+    void streamEscapesRawHtmlAndUnsafeLinks() {
+        MarkdownStream stream = renderer.openStream();
+
+        MarkdownStream.Update script = stream.append("<script>alert(1)</script>\n\nText <img src=x onerror=alert(1)> ");
+        MarkdownStream.Update link = stream.append("[Link](javascript:alert(1))");
+        String html = script.finishedHtml() + link.finishedHtml() + stream.finish().finishedHtml();
+
+        assertAll(
+                () -> assertFalse(html.contains("<script>"), html),
+                () -> assertTrue(html.contains("&lt;script&gt;alert(1)&lt;/script&gt;"), html),
+                () -> assertFalse(html.contains("<img"), html),
+                () -> assertFalse(html.contains("href=\"javascript:"), html));
+    }
 }
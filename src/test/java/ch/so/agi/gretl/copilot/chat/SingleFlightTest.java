@@ -0,0 +1,91 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class SingleFlightTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flights = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentSubscribersShareOneUpstreamSubscription() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger subscriptions = new AtomicInteger();
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+
+        flights.flux("key", () -> upstream.asFlux().doOnSubscribe(s -> subscriptions.incrementAndGet()))
+                .subscribe(first::add);
+        upstream.tryEmitNext("a");
+        flights.flux("key", () -> upstream.asFlux().doOnSubscribe(s -> subscriptions.incrementAndGet()))
+                .subscribe(second::add);
+        upstream.tryEmitNext("b");
+        upstream.tryEmitComplete();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(List.of("a", "b"), first);
+        assertEquals(List.of("a", "b"), second, "a late subscriber gets the emitted elements replayed");
+        assertEquals(1.0, meterRegistry.counter("gretl.copilot.singleflight.coalesced", "stage", "test").count());
+    }
+
+    @Test
+    void releasesTheKeyAfterCompletionAndError() {
+        AtomicInteger subscriptions = new AtomicInteger();
+
+        StepVerifier.create(flights.flux("key",
+                () -> Flux.just("a").doOnSubscribe(s -> subscriptions.incrementAndGet())))
+                .expectNext("a")
+                .verifyComplete();
+        StepVerifier.create(flights.flux("key",
+                () -> Flux.<String>error(new IllegalStateException("boom"))
+                        .doOnSubscribe(s -> subscriptions.incrementAndGet())))
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(flights.mono("key", () -> Mono.just("b")
+                .doOnSubscribe(s -> subscriptions.incrementAndGet())))
+                .expectNext("b")
+                .verifyComplete();
+
+        assertEquals(3, subscriptions.get());
+    }
+
+    @Test
+    void cancellingOneSubscriberDoesNotCancelTheOthers() {
+        Sinks.Many<String> upstream = Sinks.many().multicast().onBackpressureBuffer();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<String> remaining = new ArrayList<>();
+
+        Disposable first = flights.flux("key", () -> upstream.asFlux().doOnCancel(() -> cancelled.set(true)))
+                .subscribe();
+        Disposable second = flights.flux("key", () -> upstream.asFlux().doOnCancel(() -> cancelled.set(true)))
+                .subscribe(remaining::add);
+        first.dispose();
+        upstream.tryEmitNext("a");
+
+        assertFalse(cancelled.get());
+        assertEquals(List.of("a"), remaining);
+
+        second.dispose();
+        assertTrue(cancelled.get(), "the upstream is cancelled once every subscriber is gone");
+
+        AtomicInteger subscriptions = new AtomicInteger();
+        flights.flux("key", () -> Flux.just("b").doOnSubscribe(s -> subscriptions.incrementAndGet())).blockLast();
+        assertEquals(1, subscriptions.get(), "the key is released after the cancellation");
+    }
+}
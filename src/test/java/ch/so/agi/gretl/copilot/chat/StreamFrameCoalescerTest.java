@@ -0,0 +1,73 @@
+package ch.so.agi.gretl.copilot.chat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment;
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment.SegmentType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class StreamFrameCoalescerTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(40);
+
+    @Test
+    void flushesTextWhenTheWindowCloses() {
+        StreamFrameCoalescer coalescer = coalescer(4096);
+
+        StepVerifier.withVirtualTime(() -> coalescer.coalesce(Flux.concat(Flux.just(text("Hal"), text("lo")),
+                Mono.delay(Duration.ofMillis(100)).thenMany(Flux.just(text(" Welt"))))))
+                .expectSubscription()
+                .expectNoEvent(WINDOW.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(text("Hallo"))
+                .thenAwait(Duration.ofMillis(100))
+                .expectNext(text(" Welt"))
+                .verifyComplete();
+    }
+
+    @Test
+    void flushesTextAsSoonAsTheByteBudgetIsReached() {
+        StreamFrameCoalescer coalescer = coalescer(4);
+
+        StepVerifier.withVirtualTime(() -> coalescer
+                .coalesce(Flux.just(text("ab"), text("cd"), text("ef")).concatWith(Flux.never())))
+                .expectSubscription()
+                .expectNext(text("abcd"))
+                .expectNoEvent(WINDOW.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(text("ef"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void flushesTextBeforeOtherSegmentsWithoutWaiting() {
+        StreamFrameCoalescer coalescer = coalescer(4096);
+        CopilotStreamSegment code = new CopilotStreamSegment(SegmentType.CODE_BLOCK, "gradle build");
+
+        StepVerifier.withVirtualTime(() -> coalescer
+                .coalesce(Flux.just(text("a"), text("b"), code, text("c")).concatWith(Flux.never())))
+                .expectSubscription()
+                .expectNext(text("ab"), code)
+                .expectNoEvent(WINDOW.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(text("c"))
+                .thenCancel()
+                .verify();
+    }
+
+    private static StreamFrameCoalescer coalescer(int maxBytes) {
+        ChatPipelineProperties properties = new ChatPipelineProperties();
+        properties.setFrameWindow(WINDOW);
+        properties.setFrameMaxBytes(maxBytes);
+        return new StreamFrameCoalescer(properties);
+    }
+
+    private static CopilotStreamSegment text(String content) {
+        return new CopilotStreamSegment(SegmentType.TEXT, content);
+    }
+}
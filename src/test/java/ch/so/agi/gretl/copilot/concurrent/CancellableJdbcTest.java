@@ -0,0 +1,71 @@
+package ch.so.agi.gretl.copilot.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+class CancellableJdbcTest {
+
+    private final Scheduler scheduler = Schedulers.newSingle("cancellable-jdbc-test");
+
+    @AfterEach
+    void disposeScheduler() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void disposingTheSubscriptionCancelsTheRunningStatement() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            executing.countDown();
+            try {
+                cancelled.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new SQLException("canceling statement due to user request", "57014");
+        });
+        doAnswer(invocation -> {
+            cancelled.countDown();
+            return null;
+        }).when(statement).cancel();
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Disposable subscription = CancellationScope.fromCallable(() -> CancellableJdbc.query(jdbcTemplate, "SELECT 1",
+                ps -> {
+                }, (rs, rowNum) -> rs.getInt(1)), scheduler).subscribe(null, ex -> {
+                });
+
+        assertTrue(executing.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+
+        verify(statement, timeout(5000)).cancel();
+        verify(statement, timeout(5000)).close();
+    }
+}
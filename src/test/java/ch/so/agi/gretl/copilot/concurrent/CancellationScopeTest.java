@@ -0,0 +1,96 @@
+package ch.so.agi.gretl.copilot.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+class CancellationScopeTest {
+
+    private final Scheduler scheduler = Schedulers.newSingle("cancellation-test");
+
+    @AfterEach
+    void disposeScheduler() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void disposingTheMonoRunsTheCallbacksAndInterruptsTheRunner() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch callbackRan = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean removedCallbackRan = new AtomicBoolean();
+
+        Disposable subscription = CancellationScope.fromCallable(() -> {
+            CancellationScope scope = CancellationScope.current();
+            scope.onCancel(callbackRan::countDown);
+            scope.onCancel(() -> removedCallbackRan.set(true)).close();
+            started.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException ex) {
+                if (scope.isCancelled()) {
+                    interrupted.countDown();
+                }
+            }
+            return "done";
+        }, scheduler).subscribe();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+
+        assertTrue(callbackRan.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertFalse(removedCallbackRan.get());
+        assertEquals(Boolean.FALSE, CancellationScope.fromCallable(() -> Thread.currentThread().isInterrupted(),
+                scheduler).block(Duration.ofSeconds(5)), "the interrupt must not leak into the next task");
+    }
+
+    @Test
+    void registeringOnACancelledScopeRunsTheCallbackImmediately() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch ranImmediately = new CountDownLatch(1);
+
+        Disposable subscription = CancellationScope.fromCallable(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException ex) {
+                AtomicBoolean ran = new AtomicBoolean();
+                CancellationScope.current().onCancel(() -> ran.set(true));
+                if (ran.get()) {
+                    ranImmediately.countDown();
+                }
+            }
+            return "done";
+        }, scheduler).subscribe();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+
+        assertTrue(ranImmediately.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void outsideOfAScopeNothingIsEverCancelled() {
+        AtomicBoolean ran = new AtomicBoolean();
+        CancellationScope scope = CancellationScope.current();
+
+        scope.onCancel(() -> ran.set(true)).close();
+        scope.cancel();
+
+        assertFalse(scope.isCancelled());
+        assertFalse(ran.get());
+    }
+}
@@ -0,0 +1,39 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ch.so.agi.gretl.copilot.vector.HeapEmbeddingMatrix;
+
+class IntentExamplesTest {
+
+    private final IntentExamples examples = new IntentExamples(
+            HeapEmbeddingMatrix.normalized(new long[] { 1, 2, 3 },
+                    List.of(new float[] { 1, 0, 0 }, new float[] { 0, 1, 0 }, new float[] { 1, 1, 0 }), 3),
+            Map.of(1L, new IntentExample(1, "CsvImport", "CSV importieren", null),
+                    2L, new IntentExample(2, "SqlExecutor", "SQL ausführen", null),
+                    3L, new IntentExample(3, "CsvExport", "CSV exportieren", null)));
+
+    @Test
+    void returnsNearestExamplesFirst() {
+        List<IntentExamples.Neighbour> nearest = examples.nearest(new float[] { 2, 0.5f, 0 }, 2);
+
+        assertEquals(List.of("CsvImport", "CsvExport"),
+                nearest.stream().map(neighbour -> neighbour.example().taskName()).toList());
+        assertEquals(2 / Math.sqrt(4.25), nearest.get(0).similarity(), 1e-6);
+    }
+
+    @Test
+    void skipsExamplesWithoutMetadata() {
+        IntentExamples partial = new IntentExamples(
+                HeapEmbeddingMatrix.normalized(new long[] { 1, 2 },
+                        List.of(new float[] { 1, 0 }, new float[] { 0, 1 }), 2),
+                Map.of(2L, new IntentExample(2, "SqlExecutor", "SQL ausführen", null)));
+
+        assertEquals(1, partial.nearest(new float[] { 1, 0 }, 2).size());
+    }
+}
@@ -0,0 +1,30 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.pgvector.PGvector;
+
+import ch.so.agi.gretl.copilot.PgvectorTestDatabase;
+
+@Testcontainers(disabledWithoutDocker = true)
+class IntentQueryPlanTest {
+
+    @Test
+    void intentQueryUsesHnswIndex() throws SQLException {
+        PGvector query = PgvectorTestDatabase.randomVector(new Random(1));
+
+        String plan = PgvectorTestDatabase.explain(DatabaseIntentClassifier.INTENT_QUERY, statement -> {
+            statement.setObject(1, query);
+            statement.setObject(2, query);
+            statement.setInt(3, 5);
+        });
+
+        assertTrue(plan.contains("idx_task_examples_embedding_hnsw"), plan);
+    }
+}
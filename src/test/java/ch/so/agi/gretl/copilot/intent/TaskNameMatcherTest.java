@@ -0,0 +1,32 @@
+package ch.so.agi.gretl.copilot.intent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TaskNameMatcherTest {
+
+    private final TaskNameMatcher matcher = TaskNameMatcher
+            .build(List.of("CsvImport", "CsvExport", "Ili2pgImport", "SqlExecutor", "Import", "Db2Db"));
+
+    @Test
+    void findsTaskNamesIgnoringCase() {
+        assertEquals(List.of("SqlExecutor", "CsvImport"),
+                matcher.find("Wie rufe ich den sqlexecutor nach dem CSVIMPORT auf?"));
+    }
+
+    @Test
+    void matchesWholeWordsOnly() {
+        assertEquals(List.of("Ili2pgImport"), matcher.find("Parameter von Ili2pgImport"));
+        assertEquals(List.of(), matcher.find("Was macht CsvImporter oder MyDb2Db?"));
+        assertEquals(List.of("Import"), matcher.find("Import einer Datei"));
+    }
+
+    @Test
+    void reportsEachTaskOnceInOrderOfFirstMention() {
+        assertEquals(List.of("CsvExport", "CsvImport"),
+                matcher.find("CsvExport oder CsvImport? Ich meine CsvExport."));
+    }
+}
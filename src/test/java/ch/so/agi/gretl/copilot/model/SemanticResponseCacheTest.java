@@ -0,0 +1,109 @@
+package ch.so.agi.gretl.copilot.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment.SegmentType;
+
+class SemanticResponseCacheTest {
+
+    private static final float[] QUESTION = { 1f, 0f, 0f };
+    private static final float[] SIMILAR_QUESTION = { 1f, 0.1f, 0f };
+    private static final float[] OTHER_QUESTION = { 0f, 1f, 0f };
+    private static final List<CopilotStreamSegment> ANSWER = List.of(
+            new CopilotStreamSegment(SegmentType.TEXT, "Mit dem Task "),
+            new CopilotStreamSegment(SegmentType.CODE_BLOCK, "Db2Db"));
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger generations = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SemanticResponseCache cache = new SemanticResponseCache(new SemanticCacheProperties(),
+            meterRegistry, nanos::get);
+
+    @Test
+    void replaysTheAnswerOfASimilarQuestion() {
+        assertEquals(ANSWER, ask(QUESTION, "task.db2db", answer()));
+        assertEquals(ANSWER, ask(SIMILAR_QUESTION, "task.db2db", answer()));
+
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void generatesBelowTheThresholdAndForAnotherIntent() {
+        ask(QUESTION, "task.db2db", answer());
+        ask(OTHER_QUESTION, "task.db2db", answer());
+        ask(QUESTION, "task.csvimport", answer());
+
+        assertEquals(3, generations.get());
+    }
+
+    @Test
+    void generatesAgainOnceTheAnswerExpired() {
+        ask(QUESTION, "task.db2db", answer());
+        nanos.addAndGet(new SemanticCacheProperties().getTtl().plusSeconds(1).toNanos());
+        ask(QUESTION, "task.db2db", answer());
+
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void doesNotCacheFailedOrCancelledGenerations() {
+        Flux<CopilotStreamSegment> failing = Flux.concat(Flux.just(ANSWER.get(0)),
+                Flux.error(new IllegalStateException("model unavailable")));
+        cache.stream(QUESTION, prompt("task.db2db"), () -> generate(failing))
+                .onErrorResume(ex -> Flux.empty()).blockLast(Duration.ofSeconds(5));
+        cache.stream(QUESTION, prompt("task.db2db"), () -> generate(answer()))
+                .take(1).blockLast(Duration.ofSeconds(5));
+        ask(QUESTION, "task.db2db", answer());
+
+        assertEquals(3, generations.get());
+    }
+
+    @Test
+    void storesConcurrentAnswersToTheSameQuestionOnce() {
+        Sinks.Many<CopilotStreamSegment> first = Sinks.many().unicast().onBackpressureBuffer();
+        Sinks.Many<CopilotStreamSegment> second = Sinks.many().unicast().onBackpressureBuffer();
+        cache.stream(QUESTION, prompt("task.db2db"), () -> generate(first.asFlux())).subscribe();
+        cache.stream(SIMILAR_QUESTION, prompt("task.db2db"), () -> generate(second.asFlux())).subscribe();
+        ANSWER.forEach(segment -> {
+            first.tryEmitNext(segment);
+            second.tryEmitNext(segment);
+        });
+        first.tryEmitComplete();
+        second.tryEmitComplete();
+
+        assertEquals(2, generations.get());
+        assertEquals(1.0, meterRegistry.get("gretl.copilot.cache.semantic.size").gauge().value());
+    }
+
+    private List<CopilotStreamSegment> ask(float[] embedding, String intentLabel,
+            Flux<CopilotStreamSegment> generated) {
+        return cache.stream(embedding, prompt(intentLabel), () -> generate(generated)).collectList()
+                .block(Duration.ofSeconds(5));
+    }
+
+    private Flux<CopilotStreamSegment> generate(Flux<CopilotStreamSegment> generated) {
+        generations.incrementAndGet();
+        return generated;
+    }
+
+    private static Flux<CopilotStreamSegment> answer() {
+        return Flux.fromIterable(ANSWER);
+    }
+
+    private static CopilotPrompt prompt(String intentLabel) {
+        return new CopilotPrompt("Wie kopiere ich Tabellen?", new IntentClassification(intentLabel, 0.9, null, null),
+                List.of());
+    }
+}
@@ -0,0 +1,58 @@
+package ch.so.agi.gretl.copilot.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.so.agi.gretl.copilot.model.CopilotStreamSegment.SegmentType;
+
+class StreamingSegmentParserTest {
+
+    @Test
+    void emitsTextImmediatelyAndCodeBlockWhenFenceCloses() {
+        StreamingSegmentParser parser = new StreamingSegmentParser();
+
+        assertEquals(List.of(text("### Beschreibung\n")), parser.append("### Beschreibung\n"));
+        assertEquals(List.of(text("Nutze CsvImport.\n")), parser.append("Nutze CsvImport.\n"));
+        assertEquals(List.of(), parser.append("```gradle\ntasks.register('a', CsvImport) {\n"));
+        assertEquals(List.of(code("tasks.register('a', CsvImport) {\n}"), text("\nFertig.")),
+                parser.append("}\n```\nFertig."));
+        assertEquals(List.of(), parser.finish());
+    }
+
+    @Test
+    void recognisesFencesSplitAcrossChunks() {
+        StreamingSegmentParser parser = new StreamingSegmentParser();
+        List<CopilotStreamSegment> segments = new ArrayList<>();
+
+        for (String chunk : List.of("Beispiel:\n`", "``Gra", "dle\nfoo = 1\n`", "`", "` Ende")) {
+            segments.addAll(parser.append(chunk));
+        }
+        segments.addAll(parser.finish());
+
+        assertEquals(List.of(text("Beispiel:\n"), code("foo = 1"), text(" Ende")), segments);
+    }
+
+    @Test
+    void keepsOtherFencesAsTextAndFlushesUnterminatedCode() {
+        StreamingSegmentParser parser = new StreamingSegmentParser();
+        List<CopilotStreamSegment> segments = new ArrayList<>();
+
+        segments.addAll(parser.append("```sql\nSELECT 1;\n```\n"));
+        segments.addAll(parser.append("```gradle\nbar = 2"));
+        segments.addAll(parser.finish());
+
+        assertEquals(List.of(text("```sql\nSELECT 1;\n```\n"), code("bar = 2")), segments);
+    }
+
+    private static CopilotStreamSegment text(String content) {
+        return new CopilotStreamSegment(SegmentType.TEXT, content);
+    }
+
+    private static CopilotStreamSegment code(String content) {
+        return new CopilotStreamSegment(SegmentType.CODE_BLOCK, content);
+    }
+}
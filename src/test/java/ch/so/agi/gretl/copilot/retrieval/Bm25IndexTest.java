@@ -0,0 +1,57 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = Bm25Index.builder()
+            .add(1, "CsvImport", "Importiert eine CSV-Datei in eine bestehende Tabelle.")
+            .add(2, "ShpImport", "Importiert eine Shapedatei in eine bestehende Tabelle.")
+            .add(3, "Ili2pgImport", "Importiert INTERLIS-Transferdateien mit ili2pg in die Datenbank.")
+            .add(4, "Parameter", "Der Parameter dataFile ist erforderlich.")
+            .build();
+
+    @Test
+    void ranksDocumentWithRareTermFirst() {
+        List<LexicalHit> hits = index.search("CSV-Datei in eine Tabelle laden", 10);
+
+        assertEquals(1, hits.get(0).id());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void matchesInflectedGermanWords() {
+        List<LexicalHit> hits = index.search("Transferdatei importieren", 10);
+
+        assertEquals(3, hits.get(0).id());
+    }
+
+    @Test
+    void scoresOnlyAcceptedChunks() {
+        List<LexicalHit> hits = index.search("CSV-Datei in eine Tabelle laden", 10, id -> id == 2);
+
+        assertEquals(1, hits.size());
+        assertEquals(2, hits.get(0).id());
+    }
+
+    @Test
+    void matchesCamelCaseParts() {
+        assertEquals(3, index.search("ili2pg", 10).get(0).id());
+    }
+
+    @Test
+    void ignoresStopWordsAndUnknownTerms() {
+        assertTrue(index.search("und die der", 10).isEmpty());
+        assertTrue(index.search("Geopackage", 10).isEmpty());
+    }
+
+    @Test
+    void limitsHits() {
+        assertEquals(2, index.search("importiert", 2).size());
+    }
+}
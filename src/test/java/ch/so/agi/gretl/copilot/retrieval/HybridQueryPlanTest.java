@@ -0,0 +1,84 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import ch.so.agi.gretl.copilot.PgvectorTestDatabase;
+
+@Testcontainers(disabledWithoutDocker = true)
+class HybridQueryPlanTest {
+
+    @Test
+    void hybridQueryUsesHnswAndGinIndexes() throws SQLException {
+        String sql = DatabaseRetrievalService.HYBRID_QUERY_TEMPLATE.formatted(DatabaseRetrievalService.DATABASE_VEC,
+                DatabaseRetrievalService.DATABASE_BM);
+
+        String plan = PgvectorTestDatabase.explain(sql, statement -> {
+            statement.setObject(1, PgvectorTestDatabase.randomVector(new Random(1)));
+            statement.setString(2, "csv tabelle");
+            statement.setDouble(3, 0.6);
+            statement.setInt(4, 60);
+            statement.setNull(5, Types.ARRAY);
+        });
+
+        assertTrue(plan.contains("idx_doc_chunks_embedding_hnsw"), plan);
+        assertTrue(plan.contains("idx_doc_chunks_content_tsv"), plan);
+        assertFalse(plan.contains("to_tsvector"), plan);
+    }
+
+    @Test
+    void scopedQueryLooksUpTheTasks() throws SQLException {
+        String sql = DatabaseRetrievalService.HYBRID_QUERY_TEMPLATE.formatted(
+                DatabaseRetrievalService.SCOPED_DATABASE_VEC, DatabaseRetrievalService.SCOPED_DATABASE_BM);
+
+        String plan = PgvectorTestDatabase.explain(sql, statement -> {
+            statement.setObject(1, PgvectorTestDatabase.randomVector(new Random(1)));
+            statement.setString(2, "csv tabelle");
+            statement.setDouble(3, 0.6);
+            statement.setInt(4, 60);
+            statement.setArray(5, statement.getConnection().createArrayOf("text", new String[] { "csv" }));
+        });
+
+        assertTrue(plan.contains("idx_doc_chunks_task_section"), plan);
+        assertFalse(plan.contains("idx_doc_chunks_embedding_hnsw"), plan);
+    }
+
+    @Test
+    void prefixQueryUsesThePrefixIndex() throws SQLException {
+        RetrievalProperties properties = new RetrievalProperties();
+        properties.setPrefixDimensions(PgvectorTestDatabase.PREFIX_DIMENSIONS);
+        String databaseVec = DatabaseRetrievalService.databaseVec(properties,
+                new JdbcTemplate(PgvectorTestDatabase.dataSource()));
+        assertEquals(DatabaseRetrievalService.DATABASE_PREFIX_VEC.formatted(PgvectorTestDatabase.PREFIX_DIMENSIONS,
+                properties.getPrefixRescoreMultiplier()), databaseVec);
+
+        String plan = PgvectorTestDatabase.explain(DatabaseRetrievalService.HYBRID_QUERY_TEMPLATE
+                .formatted(databaseVec, DatabaseRetrievalService.DATABASE_BM), statement -> {
+                    statement.setObject(1, PgvectorTestDatabase.randomVector(new Random(1)));
+                    statement.setString(2, "csv tabelle");
+                    statement.setDouble(3, 0.6);
+                    statement.setInt(4, 60);
+                    statement.setNull(5, Types.ARRAY);
+                });
+
+        assertTrue(plan.contains("idx_doc_chunks_embedding_prefix_" + PgvectorTestDatabase.PREFIX_DIMENSIONS), plan);
+    }
+
+    @Test
+    void prefixQueryFallsBackWithoutIndex() throws SQLException {
+        RetrievalProperties properties = new RetrievalProperties();
+        properties.setPrefixDimensions(512);
+
+        assertEquals(DatabaseRetrievalService.DATABASE_VEC, DatabaseRetrievalService.databaseVec(properties,
+                new JdbcTemplate(PgvectorTestDatabase.dataSource())));
+    }
+}
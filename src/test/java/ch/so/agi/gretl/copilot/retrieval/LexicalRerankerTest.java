@@ -0,0 +1,41 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.so.agi.gretl.copilot.intent.IntentClassification;
+
+class LexicalRerankerTest {
+
+    private final LexicalReranker reranker = new LexicalReranker(new RetrievalProperties());
+
+    @Test
+    void prefersCandidateMatchingQueryTerms() {
+        RetrievalCandidate csv = candidate(1, "CsvImport", "CsvImport", "Importiert eine CSV-Datei in eine Tabelle.");
+        RetrievalCandidate shp = candidate(2, "ShpImport", "ShpImport", "Importiert eine Shapedatei in eine Tabelle.");
+
+        List<RerankedCandidate> reranked = reranker.rerank("Wie importiere ich eine CSV Datei?", null,
+                List.of(shp, csv));
+
+        assertEquals(1, reranked.get(0).candidate().id());
+    }
+
+    @Test
+    void boostsTaskMatchingIntentLabel() {
+        RetrievalCandidate csv = candidate(1, "CsvImport", "Parameter", "Der Parameter dataFile ist erforderlich.");
+        RetrievalCandidate shp = candidate(2, "ShpImport", "Parameter", "Der Parameter dataFile ist erforderlich.");
+        IntentClassification classification = new IntentClassification("task.shpimport", 0.9, "", List.of());
+
+        List<RerankedCandidate> reranked = reranker.rerank("Welche Parameter gibt es?", classification,
+                List.of(csv, shp));
+
+        assertEquals(2, reranked.get(0).candidate().id());
+    }
+
+    private RetrievalCandidate candidate(long id, String taskName, String heading, String content) {
+        return new RetrievalCandidate(id, taskName, heading, "https://example.org/" + id, content, 0.5, 0.5, 0.5);
+    }
+}
@@ -0,0 +1,32 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class LlmRerankerTest {
+
+    @Test
+    void parsesLastArrayAfterEchoedPassageNumbers() {
+        Optional<List<Double>> scores = LlmReranker
+                .parseScoreArray("[1] is most relevant, [3] is not.\n[0.9, 0.2, 0.05]", 3);
+
+        assertEquals(Optional.of(List.of(0.9, 0.2, 0.05)), scores);
+    }
+
+    @Test
+    void rejectsArraysOfAnotherLength() {
+        assertTrue(LlmReranker.parseScoreArray("[0.9, 0.2]", 3).isEmpty());
+    }
+
+    @Test
+    void rejectsNonNumericEntriesAndMissingArrays() {
+        assertTrue(LlmReranker.parseScoreArray("[0.9, \"high\", 0.1]", 3).isEmpty());
+        assertTrue(LlmReranker.parseScoreArray("Passage 1 is the best.", 3).isEmpty());
+        assertTrue(LlmReranker.parseScoreArray(null, 3).isEmpty());
+    }
+}
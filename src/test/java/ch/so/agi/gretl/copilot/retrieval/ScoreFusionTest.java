@@ -0,0 +1,40 @@
+package ch.so.agi.gretl.copilot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.so.agi.gretl.copilot.retrieval.RetrievalProperties.Fusion;
+import ch.so.agi.gretl.copilot.vector.VectorHit;
+
+class ScoreFusionTest {
+
+    private final List<VectorHit> vectorHits = List.of(new VectorHit(1, 0.9f), new VectorHit(2, 0.8f),
+            new VectorHit(3, 0.5f));
+    private final List<LexicalHit> lexicalHits = List.of(new LexicalHit(3, 12f), new LexicalHit(4, 6f),
+            new LexicalHit(2, 3f));
+
+    @Test
+    void reciprocalRankFusionPrefersChunksFoundByBothBranches() {
+        List<FusedHit> fused = ScoreFusion.fuse(vectorHits, lexicalHits, Fusion.RRF, 0.6, 60, 10);
+
+        assertEquals(List.of(3L, 2L, 1L, 4L), fused.stream().map(FusedHit::id).toList());
+        assertEquals((1.0 / 63 + 1.0 / 61) * 61 / 2, fused.get(0).score(), 1e-12);
+    }
+
+    @Test
+    void minMaxFusionWeightsNormalisedScores() {
+        List<FusedHit> fused = ScoreFusion.fuse(vectorHits, lexicalHits, Fusion.MIN_MAX, 0.6, 60, 2);
+
+        assertEquals(2, fused.size());
+        FusedHit best = fused.get(0);
+        assertEquals(3, best.id());
+        assertEquals(0.0, best.vectorNorm(), 1e-9);
+        assertEquals(1.0, best.bm25Norm(), 1e-9);
+        assertEquals(0.6, best.score(), 1e-9);
+        assertEquals(1, fused.get(1).id());
+        assertEquals(0.4, fused.get(1).score(), 1e-9);
+    }
+}
@@ -0,0 +1,37 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EmbeddingStoreFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedFileMatchesNormalisedRows() throws Exception {
+        long[] ids = { 11, 12, 13 };
+        List<float[]> rows = List.of(new float[] { 3, 4, 0 }, new float[] { 0, 0, 2 }, new float[] { 1, 1, 1 });
+        Path file = directory.resolve("chunks.emb");
+
+        EmbeddingStoreFile.write(file, 4711L, ids, rows, 3);
+        MappedEmbeddingMatrix mapped = EmbeddingStoreFile.open(file);
+        HeapEmbeddingMatrix heap = HeapEmbeddingMatrix.normalized(ids, rows, 3);
+
+        assertEquals(4711L, mapped.sourceVersion());
+        assertEquals(3, mapped.size());
+        assertEquals(3, mapped.dimensions());
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            assertEquals(ids[ordinal], mapped.id(ordinal));
+            assertArrayEquals(heap.vector(ordinal), mapped.vector(ordinal));
+        }
+        assertArrayEquals(new float[] { 0.6f, 0.8f, 0f }, mapped.vector(0), 1e-6f);
+        assertEquals(heap.dot(0, 2), mapped.dot(0, 2), 1e-6f);
+    }
+}
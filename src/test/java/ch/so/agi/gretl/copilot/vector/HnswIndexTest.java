@@ -0,0 +1,52 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @Test
+    void findsTheQueryRowItself() {
+        EmbeddingMatrix vectors = randomMatrix(500, 1);
+        HnswIndex index = HnswIndex.build(vectors, 8, 64, 32, 42);
+
+        List<VectorHit> hits = index.search(vectors.vector(123), 1);
+
+        assertEquals(1, hits.size());
+        assertEquals(vectors.id(123), hits.get(0).id());
+        assertEquals(1.0f, hits.get(0).score(), 1e-5f);
+    }
+
+    @Test
+    void recallAgainstExactSearchIsHigh() {
+        EmbeddingMatrix vectors = randomMatrix(2000, 2);
+        HnswIndex index = HnswIndex.build(vectors, 16, 100, 64, 42);
+
+        double recall = RecallEvaluator.recallAtK(index, new ExactIndex(vectors), vectors, 100, 10, 7);
+
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    private EmbeddingMatrix randomMatrix(int size, long seed) {
+        Random random = new Random(seed);
+        long[] ids = new long[size];
+        List<float[]> rows = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            ids[row] = 1000 + row;
+            float[] vector = new float[DIMENSIONS];
+            for (int index = 0; index < DIMENSIONS; index++) {
+                vector[index] = (float) random.nextGaussian();
+            }
+            rows.add(vector);
+        }
+        return HeapEmbeddingMatrix.normalized(ids, rows, DIMENSIONS);
+    }
+}
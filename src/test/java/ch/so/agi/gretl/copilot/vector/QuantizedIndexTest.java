@@ -0,0 +1,66 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class QuantizedIndexTest {
+
+    private static final int DIMENSIONS = 256;
+
+    private final EmbeddingMatrix vectors = clusteredMatrix(2000);
+    private final ExactIndex exact = new ExactIndex(vectors);
+
+    @Test
+    void int8RescoredRecallIsHigh() {
+        QuantizedIndex index = QuantizedIndex.build(vectors, Quantization.INT8, 4);
+
+        assertEquals(vectors.size() * DIMENSIONS, index.codeBytes());
+        assertTrue(RecallEvaluator.recallAtK(index, exact, vectors, 50, 10, 3) >= 0.95);
+    }
+
+    @Test
+    void binaryRescoredRecallIsHigh() {
+        QuantizedIndex index = QuantizedIndex.build(vectors, Quantization.BINARY, 10);
+
+        assertEquals(vectors.size() * DIMENSIONS / 8, index.codeBytes());
+        assertTrue(RecallEvaluator.recallAtK(index, exact, vectors, 50, 10, 3) >= 0.9);
+    }
+
+    @Test
+    void rescoredHitsCarryExactScores() {
+        QuantizedIndex index = QuantizedIndex.build(vectors, Quantization.BINARY, 10);
+        float[] query = vectors.vector(42);
+
+        VectorHit best = index.search(query, 1).get(0);
+
+        assertEquals(exact.search(query, 1).get(0), best);
+    }
+
+    private static EmbeddingMatrix clusteredMatrix(int size) {
+        Random random = new Random(1);
+        float[][] centers = new float[40][DIMENSIONS];
+        for (float[] center : centers) {
+            for (int index = 0; index < DIMENSIONS; index++) {
+                center[index] = (float) random.nextGaussian();
+            }
+        }
+        long[] ids = new long[size];
+        List<float[]> rows = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            ids[row] = row;
+            float[] center = centers[random.nextInt(centers.length)];
+            float[] vector = new float[DIMENSIONS];
+            for (int index = 0; index < DIMENSIONS; index++) {
+                vector[index] = center[index] + (float) random.nextGaussian();
+            }
+            rows.add(vector);
+        }
+        return HeapEmbeddingMatrix.normalized(ids, rows, DIMENSIONS);
+    }
+}
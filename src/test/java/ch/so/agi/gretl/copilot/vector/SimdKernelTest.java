@@ -0,0 +1,62 @@
+package ch.so.agi.gretl.copilot.vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Loads the SIMD kernel directly, so a kernel that fails to initialise on some vector shape fails here instead of
+ * silently falling back to the scalar loop in {@link VectorMath}.
+ */
+class SimdKernelTest {
+
+    private static final List<VectorSpecies<Float>> SHAPES = List.of(FloatVector.SPECIES_128,
+            FloatVector.SPECIES_256, FloatVector.SPECIES_512, FloatVector.SPECIES_PREFERRED);
+
+    private final Random random = new Random(7);
+
+    @Test
+    void dotMatchesTheScalarLoopOnEveryShape() {
+        for (VectorSpecies<Float> species : SHAPES) {
+            SimdKernel kernel = new SimdKernel(species);
+            for (int length : new int[] { 0, 3, 16, 67, 3072 }) {
+                float[] a = randomFloats(length + 5);
+                float[] b = randomFloats(length + 2);
+                assertEquals(VectorMath.scalarDot(a, 5, b, 2, length), kernel.dot(a, 5, b, 2, length),
+                        1e-3f * Math.max(1, length), species + ", length " + length);
+            }
+        }
+    }
+
+    @Test
+    void dotInt8MatchesTheScalarLoopOnEveryShape() {
+        for (VectorSpecies<Float> species : SHAPES) {
+            SimdKernel kernel = new SimdKernel(species);
+            for (int length : new int[] { 0, 3, 16, 67, 3072 }) {
+                float[] query = randomFloats(length);
+                byte[] codes = new byte[length + 9];
+                random.nextBytes(codes);
+                float expected = 0f;
+                for (int index = 0; index < length; index++) {
+                    expected += query[index] * codes[9 + index];
+                }
+                assertEquals(expected, kernel.dotInt8(query, codes, 9, length), 1e-2f * Math.max(1, length),
+                        species + ", length " + length);
+            }
+        }
+    }
+
+    private float[] randomFloats(int length) {
+        float[] values = new float[length];
+        for (int index = 0; index < length; index++) {
+            values[index] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}